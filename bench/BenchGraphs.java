@@ -0,0 +1,83 @@
+package ex1.bench;
+
+import ex1.src.WGraph_DS;
+import ex1.src.node_info;
+import ex1.src.weighted_graph;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Seeded random graphs for the benchmarks: v_size nodes with keys 0..v_size-1
+ * and an average degree of 10 (5*v_size edges), as in the WGraph_DS javadoc.
+ */
+public class BenchGraphs {
+    public static final int AVERAGE_DEGREE = 10;
+    public static final long SEED = 1;
+
+    public static WGraph_DS randomGraph(int v_size, long seed) {
+        WGraph_DS g = new WGraph_DS(v_size);
+        Random rnd = new Random(seed);
+        for (int i = 0; i < v_size; i++) {
+            g.addNode(i);
+        }
+        long e_size = (long) v_size * AVERAGE_DEGREE / 2;
+        while (g.edgeSize() < e_size) {
+            g.connect(rnd.nextInt(v_size), rnd.nextInt(v_size), rnd.nextDouble());
+        }
+        return g;
+    }
+    /**
+     * @return size random keys of nodes in 0..v_size-1 (for the queries of a benchmark).
+     */
+    public static int[] randomKeys(int v_size, int size, long seed) {
+        Random rnd = new Random(seed);
+        int[] keys = new int[size];
+        for (int i = 0; i < size; i++) keys[i] = rnd.nextInt(v_size);
+        return keys;
+    }
+    /**
+     * @return size pairs {src[], dest[]} of keys of g: the even pairs are edges of g and the odd ones
+     * random pairs (almost all of them not edges), so a lookup benchmark measures both hits and misses.
+     */
+    public static int[][] mixedPairs(weighted_graph g, int v_size, int size, long seed) {
+        Random rnd = new Random(seed);
+        int[][] pairs = new int[2][size];
+        for (int i = 0; i < size; i++) {
+            int a = rnd.nextInt(v_size), b = rnd.nextInt(v_size);
+            if (i % 2 == 0) {
+                while (g.getV(a).isEmpty()) a = rnd.nextInt(v_size);
+                int k = rnd.nextInt(g.getV(a).size());
+                for (node_info ni : g.getV(a)) {
+                    if (k-- == 0) {
+                        b = ni.getKey();
+                        break;
+                    }
+                }
+            }
+            pairs[0][i] = a;
+            pairs[1][i] = b;
+        }
+        return pairs;
+    }
+    /**
+     * @return size distinct pairs {src[], dest[]} of different keys of g that are not edges of g,
+     * so every connect of a benchmark inserts a new edge.
+     */
+    public static int[][] missingPairs(weighted_graph g, int v_size, int size, long seed) {
+        Random rnd = new Random(seed);
+        Set<Long> seen = new HashSet<>();
+        int[][] pairs = new int[2][size];
+        for (int i = 0; i < size; ) {
+            int a = rnd.nextInt(v_size), b = rnd.nextInt(v_size);
+            if (a == b || g.hasEdge(a, b) || !seen.add((long) Math.min(a, b) * v_size + Math.max(a, b))) continue;
+            pairs[0][i] = a;
+            pairs[1][i++] = b;
+        }
+        return pairs;
+    }
+
+    private BenchGraphs() {
+    }
+}
@@ -0,0 +1,27 @@
+package ex1.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all the benchmarks with the gc profiler (allocation rate per operation),
+ * the results are written to bench_output.txt and as JSON to bench_output.json.
+ * args - an optional regular expression of the benchmarks to run (e.g. "WGraphAlgoBenchmark.shortestPath")
+ */
+public class BenchRunner {
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : "ex1.bench.*")
+                .addProfiler(GCProfiler.class)
+                .jvmArgsAppend("-Xmx8g")
+                .output("bench_output.txt")
+                .result("bench_output.json")
+                .resultFormat(ResultFormatType.JSON)
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,94 @@
+package ex1.bench;
+
+import ex1.src.WGraph_Algo;
+import ex1.src.node_info;
+import ex1.src.weighted_graph;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the WGraph_Algo algorithms on a seeded random graph
+ * (nodes = 10^3, 10^5, 10^6, average degree 10).
+ * Every query benchmark runs a different (src, dest) pair on every call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WGraphAlgoBenchmark {
+    private static final int QUERIES = 1 << 10;
+
+    @Param({"1000", "100000", "1000000"})
+    public int v_size;
+
+    private WGraph_Algo algo;
+    private int[] src;
+    private int[] dest;
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        algo = new WGraph_Algo(BenchGraphs.randomGraph(v_size, BenchGraphs.SEED));
+        src = BenchGraphs.randomKeys(v_size, QUERIES, 2);
+        dest = BenchGraphs.randomKeys(v_size, QUERIES, 3);
+        file = File.createTempFile("wgraph", ".bin");
+        file.deleteOnExit();
+        algo.save(file.getPath());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * The index of the query of the calling thread.
+     */
+    @State(Scope.Thread)
+    public static class Query {
+        int next;
+
+        int next() {
+            return next++ & (QUERIES - 1);
+        }
+    }
+
+    @Benchmark
+    public weighted_graph copy() {
+        return algo.copy();
+    }
+
+    @Benchmark
+    public boolean isConnected() {
+        return algo.isConnected();
+    }
+
+    @Benchmark
+    public double shortestPathDist(Query q) {
+        int i = q.next();
+        return algo.shortestPathDist(src[i], dest[i]);
+    }
+
+    @Benchmark
+    public List<node_info> shortestPath(Query q) {
+        int i = q.next();
+        return algo.shortestPath(src[i], dest[i]);
+    }
+
+    @Benchmark
+    public boolean save() {
+        return algo.save(file.getPath());
+    }
+
+    @Benchmark
+    public boolean load() {
+        WGraph_Algo a = new WGraph_Algo();
+        return a.load(file.getPath());
+    }
+}
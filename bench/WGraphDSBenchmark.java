@@ -0,0 +1,98 @@
+package ex1.bench;
+
+import ex1.src.WGraph_DS;
+import ex1.src.weighted_graph;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the WGraph_DS operations on a seeded random graph
+ * (nodes = 10^3, 10^5, 10^6, average degree 10).
+ * The reads run in Throughput and SampleTime mode (operations per second and latency percentiles),
+ * the mutations work on a fresh graph every iteration.
+ * The lookups query edges and missing pairs half and half, connect inserts a new edge every call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WGraphDSBenchmark {
+    private static final int QUERIES = 1 << 12;
+
+    @Param({"1000", "100000", "1000000"})
+    public int v_size;
+
+    private WGraph_DS graph;
+    // the pairs of the lookups, half of them edges
+    private int[] src;
+    private int[] dest;
+    // pairs that are not edges of the graph, for connect
+    private int[] freshSrc;
+    private int[] freshDest;
+    private int next;
+    private int newKey;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        graph = BenchGraphs.randomGraph(v_size, BenchGraphs.SEED);
+        int[][] pairs = BenchGraphs.mixedPairs(graph, v_size, QUERIES, 2);
+        src = pairs[0];
+        dest = pairs[1];
+        pairs = BenchGraphs.missingPairs(graph, v_size, QUERIES, 3);
+        freshSrc = pairs[0];
+        freshDest = pairs[1];
+        next = 0;
+        newKey = v_size;
+    }
+
+    @Benchmark
+    public void addNode() {
+        graph.addNode(newKey++);
+    }
+
+    /**
+     * connect changes the graph, so it is measured as a single shot of QUERIES insertions
+     * of new edges on a fresh graph.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 3, batchSize = QUERIES)
+    @Measurement(iterations = 10, batchSize = QUERIES)
+    public void connect() {
+        int i = next++;
+        graph.connect(freshSrc[i], freshDest[i], i);
+    }
+
+    @Benchmark
+    public boolean hasEdge() {
+        int i = next++ & (QUERIES - 1);
+        return graph.hasEdge(src[i], dest[i]);
+    }
+
+    @Benchmark
+    public double getEdge() {
+        int i = next++ & (QUERIES - 1);
+        return graph.getEdge(src[i], dest[i]);
+    }
+
+    /**
+     * removeNode changes the graph, so it is measured as a single shot of 1000 removals
+     * on a fresh graph.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 3, batchSize = 1000)
+    @Measurement(iterations = 10, batchSize = 1000)
+    public Object removeNode() {
+        return graph.removeNode(next++);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public weighted_graph freeze() {
+        return graph.freeze();
+    }
+}
@@ -0,0 +1,500 @@
+package ex1.src;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+/**
+ * This class represents a graph file in the compressed format of WGraph_IO (saveCompressed/openCompressed),
+ * read with random access: the neighbors of a single node are decoded without reading the rest of the file.
+ * The format - the nodes sorted by key, in blocks of up to 64 nodes (and about 32KB):
+ * header - magic "WGCZ" (int), version (int), number of nodes (int), number of edges (int),
+ * weight coding (byte), dictionary size (int), fixed point step (double), number of blocks (int),
+ * position of the block index (long),
+ * dictionary - the distinct weights (doubles) by descending frequency, if it is smaller than the plain weights,
+ * blocks - every block deflated on its own (or plain, if deflate does not make it smaller):
+ * for every node - the gap from the previous key (varint, none for the first node of the block),
+ * the degree (varint), the neighbors sorted by key - the first as a zigzag varint of its
+ * difference from the node key and the others as varints of the gap from the previous
+ * neighbor minus 1 - and then the weights of the edges in the same order,
+ * block index - for every block the first key (int), the position (long), the stored length (int)
+ * and the decoded length (int).
+ * A weight is an index into the dictionary (varint), or by the coding: EXACT - the double,
+ * FLOAT - the float (4 bytes), FIXED - round(w / step) (varint).
+ * Every undirected edge is kept in the rows of both nodes, so a neighborhood is complete in its block.
+ * The last decoded block is cached, so a scan in key order decodes every block once.
+ * All the values are big endian.
+ * The header and the block index are checked when the file is opened, a corrupt block is an IOException
+ * of the method that decodes it.
+ * The inflater of the blocks holds native memory until close().
+ * Note: the node meta data (tag, info) is not saved, the methods are synchronized.
+ */
+public class CompressedGraph implements Closeable {
+    /**
+     * The coding of the weights: EXACT keeps the doubles as they are, FLOAT rounds them to floats,
+     * FIXED rounds them to multiples of a step (fixed point).
+     */
+    public enum Weights { EXACT, FLOAT, FIXED }
+
+    static final int MAGIC = 0x5747435A; // "WGCZ"
+    static final int VERSION = 1;
+    private static final int HEADER = 41;
+    private static final int BLOCK_NODES = 64;
+    private static final int BLOCK_BYTES = 1 << 15;
+    private static final int INDEX_ENTRY = 20;
+    private static final int MAX_DICTIONARY = 1 << 16;
+    private final ByteBuffer file;
+    private final int numOfNodes, numOfEdges;
+    private final Weights coding;
+    private final double step;
+    private final double[] dictionary; // null if the weights are plain
+    private final int[] firstKey, length, rawLength;
+    private final long[] position;
+    private Inflater inflater; // created by the first deflated block, null after close()
+    private boolean closed;
+    // the last decoded block
+    private int cached = -1;
+    private byte[] block = new byte[0];
+
+    private CompressedGraph(ByteBuffer file, String name) throws IOException {
+        this.file = file;
+        if (file.limit() < HEADER || file.getInt(0) != MAGIC) throw new IOException(name + " is not a compressed graph file");
+        int version = file.getInt(4);
+        if (version != VERSION) throw new IOException("unsupported graph file version " + version);
+        numOfNodes = file.getInt(8);
+        numOfEdges = file.getInt(12);
+        if (numOfNodes < 0 || numOfEdges < 0) throw new IOException(name + " has bad counts");
+        int c = file.get(16);
+        if (c < 0 || c >= Weights.values().length) throw new IOException(name + " has an unknown weight coding " + c);
+        coding = Weights.values()[c];
+        int dictionarySize = file.getInt(17);
+        step = file.getDouble(21);
+        int blocks = file.getInt(29);
+        long index = file.getLong(33);
+        if (dictionarySize < 0 || dictionarySize > MAX_DICTIONARY || blocks < 0 || blocks > numOfNodes
+                || (blocks == 0) != (numOfNodes == 0)) throw new IOException(name + " has a bad header");
+        long data = HEADER + 8L * dictionarySize; // the first block
+        if (index < data || index + (long) INDEX_ENTRY * blocks > file.limit()) throw new IOException(name + " is truncated");
+        if (dictionarySize == 0) dictionary = null;
+        else {
+            dictionary = new double[dictionarySize];
+            for (int i = 0; i < dictionarySize; i++) dictionary[i] = file.getDouble(HEADER + 8 * i);
+        }
+        firstKey = new int[blocks];
+        position = new long[blocks];
+        length = new int[blocks];
+        rawLength = new int[blocks];
+        long raw = 0;
+        for (int b = 0; b < blocks; b++) {
+            int at = (int) index + INDEX_ENTRY * b;
+            firstKey[b] = file.getInt(at);
+            position[b] = file.getLong(at + 4);
+            length[b] = file.getInt(at + 12);
+            rawLength[b] = file.getInt(at + 16);
+            if ((b > 0 && firstKey[b] <= firstKey[b - 1]) || position[b] < data || length[b] <= 0
+                    || position[b] + length[b] > index || rawLength[b] < length[b])
+                throw new IOException(name + " has a bad block index (block " + b + ")");
+            raw += rawLength[b];
+        }
+        // a node takes at least a byte (its degree), a half edge at least two (its neighbor and its weight)
+        if (raw < numOfNodes + 4L * numOfEdges) throw new IOException(name + " has bad counts");
+    }
+    /**
+     * Memory map a graph file in the compressed format, only the header, the dictionary
+     * and the block index are read.
+     * @param file - file name
+     * @return the graph file
+     * @throws IOException - if the file can not be read or is not in the compressed format
+     */
+    static CompressedGraph open(String file) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) throw new IOException(file + " is too large");
+            MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            return new CompressedGraph(b, file);
+        }
+    }
+    /**
+     * Save the graph in the compressed format.
+     * @param g - the graph
+     * @param file - the file name (may include a relative path).
+     * @param coding - the coding of the weights
+     * @param step - the step of FIXED (> 0), ignored by the other codings
+     * @throws IOException
+     */
+    static void save(weighted_graph g, String file, Weights coding, double step) throws IOException {
+        if (coding == Weights.FIXED && !(step > 0)) throw new IllegalArgumentException("the step must be positive: " + step);
+        if (coding != Weights.FIXED) step = 0;
+        WGraph_CSR csr = g instanceof WGraph_CSR ? (WGraph_CSR) g : new WGraph_CSR(g);
+        int n = csr.nodeSize(), m2 = 2 * csr.edgeSize();
+        Map<Double, Integer> codes = dictionary(csr, coding, step);
+        double[] dict = new double[codes == null ? 0 : codes.size()];
+        if (codes != null) for (Map.Entry<Double, Integer> e : codes.entrySet()) dict[e.getValue()] = e.getKey();
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long at = HEADER + 8L * dict.length;
+            ByteBuffer head = ByteBuffer.allocate((int) at);
+            head.position(HEADER);
+            for (double w : dict) head.putDouble(w);
+            Bytes raw = new Bytes(BLOCK_BYTES + 1024);
+            byte[] deflated = new byte[BLOCK_BYTES];
+            Deflater deflater = new Deflater();
+            Bytes index = new Bytes(INDEX_ENTRY * (n / BLOCK_NODES + 1));
+            int blocks = 0;
+            for (int from = 0; from < n; ) {
+                raw.size = 0;
+                int to = from;
+                for (; to < n && to - from < BLOCK_NODES && raw.size < BLOCK_BYTES; to++) {
+                    if (to > from) raw.putVarLong((long) csr.keyAt(to) - csr.keyAt(to - 1) - 1);
+                    int begin = csr.begin(to), end = csr.end(to);
+                    raw.putVarLong(end - begin);
+                    long previous = csr.keyAt(to);
+                    for (int e = begin; e < end; e++) {
+                        long ni = csr.keyAt(csr.neighborAt(e));
+                        raw.putVarLong(e == begin ? zigzag(ni - previous) : ni - previous - 1);
+                        previous = ni;
+                    }
+                    for (int e = begin; e < end; e++) {
+                        double w = quantize(csr.weightAt(e), coding, step);
+                        if (codes != null) raw.putVarLong(codes.get(w));
+                        else if (coding == Weights.EXACT) raw.putLong(Double.doubleToRawLongBits(w));
+                        else if (coding == Weights.FLOAT) raw.putInt(Float.floatToRawIntBits((float) w));
+                        else raw.putVarLong(Math.round(w / step));
+                    }
+                }
+                deflater.reset();
+                deflater.setInput(raw.data, 0, raw.size);
+                deflater.finish();
+                if (deflated.length < raw.size) deflated = new byte[raw.size];
+                int stored = deflater.deflate(deflated, 0, raw.size);
+                // plain if deflate does not make it smaller (then the output is cut at raw.size)
+                boolean plain = !deflater.finished() || stored >= raw.size;
+                ByteBuffer out = plain ? ByteBuffer.wrap(raw.data, 0, raw.size) : ByteBuffer.wrap(deflated, 0, stored);
+                index.putInt(csr.keyAt(from));
+                index.putLong(at);
+                index.putInt(out.remaining());
+                index.putInt(raw.size);
+                at += out.remaining();
+                while (out.hasRemaining()) ch.write(out, at - out.remaining());
+                blocks++;
+                from = to;
+            }
+            deflater.end();
+            ByteBuffer tail = ByteBuffer.wrap(index.data, 0, index.size);
+            long end = at + index.size;
+            while (tail.hasRemaining()) ch.write(tail, end - tail.remaining());
+            head.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, n).putInt(12, m2 / 2).put(16, (byte) coding.ordinal())
+                    .putInt(17, dict.length).putDouble(21, step).putInt(29, blocks).putLong(33, at);
+            head.position(0);
+            while (head.hasRemaining()) ch.write(head, head.position());
+        }
+    }
+    /**
+     * Release the native memory of the inflater, the methods that decode a block
+     * throw an IOException from now on.
+     */
+    @Override
+    public synchronized void close() {
+        if (inflater != null) inflater.end();
+        inflater = null;
+        closed = true;
+        block = new byte[0];
+        cached = -1;
+    }
+    /**
+     * @return the number of nodes.
+     */
+    public int nodeSize() {
+        return numOfNodes;
+    }
+    /**
+     * @return the number of (undirected) edges.
+     */
+    public int edgeSize() {
+        return numOfEdges;
+    }
+    /**
+     * @return the coding of the weights.
+     */
+    public Weights getWeights() {
+        return coding;
+    }
+    /**
+     * Note: this method should run in O(log(|V|)) time, and decodes at most one block.
+     * @param key
+     * @return true iff there is a node with this key.
+     * @throws IOException - if the block of the key is corrupt
+     */
+    public synchronized boolean hasNode(int key) throws IOException {
+        return find(key) >= 0;
+    }
+    /**
+     * Note: this method should run in O(log(|V|)) time, and decodes at most one block.
+     * @param key
+     * @return the degree of the node, -1 if there is no such node.
+     * @throws IOException - if the block of the key is corrupt
+     */
+    public synchronized int degree(int key) throws IOException {
+        int at = find(key);
+        return at < 0 ? -1 : readDegree(new int[]{at});
+    }
+    /**
+     * Visit all the edges of the node (by ascending neighbor key):
+     * for every neighbor ni of node_id, call visitor.visit(ni, w(node_id,ni)).
+     * Only the block of the node is decoded (unless it is the cached one).
+     * @param node_id
+     * @param visitor
+     * @return false iff there is no such node.
+     * @throws IOException - if the block of the node is corrupt
+     */
+    public synchronized boolean forEachNeighbor(int node_id, edge_visitor visitor) throws IOException {
+        int at = find(node_id);
+        if (at < 0) return false;
+        int[] p = {at};
+        int degree = readDegree(p);
+        long[] ni = new long[degree];
+        long previous = node_id;
+        for (int k = 0; k < degree; k++) {
+            long v = readVarLong(p);
+            previous = ni[k] = k == 0 ? previous + unzigzag(v) : previous + v + 1;
+        }
+        for (int k = 0; k < degree; k++) visitor.visit((int) ni[k], readWeight(p));
+        return true;
+    }
+    /**
+     * @param node1
+     * @param node2
+     * @return the weight of the edge (node1, node2), -1 if there is no such edge.
+     * @throws IOException - if the block of node1 is corrupt
+     */
+    public double getEdge(int node1, int node2) throws IOException {
+        double[] w = {-1};
+        forEachNeighbor(node1, (ni, x) -> {
+            if (ni == node2) w[0] = x;
+        });
+        return w[0];
+    }
+    /**
+     * Decode the whole file, block by block, to a graph (the edges are added as one batch,
+     * see WGraph_DS.connectAll).
+     * @return the graph
+     * @throws IOException - if a block is corrupt
+     */
+    public synchronized WGraph_DS toGraph() throws IOException {
+        int[] keys = new int[numOfNodes];
+        int[] src = new int[numOfEdges], dst = new int[numOfEdges];
+        double[] w = new double[numOfEdges];
+        int n = 0, m = 0;
+        long[] ni = new long[16];
+        for (int b = 0; b < firstKey.length; b++) {
+            decode(b);
+            int[] p = {0};
+            long key = firstKey[b];
+            while (p[0] < rawLength[b]) {
+                if (p[0] > 0) key += readVarLong(p) + 1;
+                if (n == numOfNodes) throw corrupt(b);
+                keys[n++] = (int) key;
+                int degree = readDegree(p);
+                if (ni.length < degree) ni = new long[Math.max(degree, 2 * ni.length)];
+                long previous = key;
+                for (int k = 0; k < degree; k++) {
+                    long v = readVarLong(p);
+                    previous = ni[k] = k == 0 ? previous + unzigzag(v) : previous + v + 1;
+                }
+                for (int k = 0; k < degree; k++) {
+                    double x = readWeight(p);
+                    if (key < ni[k]) {
+                        if (m == numOfEdges) throw corrupt(b);
+                        src[m] = (int) key;
+                        dst[m] = (int) ni[k];
+                        w[m++] = x;
+                    }
+                }
+            }
+        }
+        if (n != numOfNodes || m != numOfEdges) throw new IOException("the compressed graph file is corrupt");
+        WGraph_DS g = new WGraph_DS(n);
+        g.connectAll(src, dst, w);
+        for (int i = 0; i < n; i++) g.addNode(keys[i]);
+        return g;
+    }
+
+    // the position of the node in its (decoded) block, after its key gap, -1 if there is no such node
+    private int find(int key) throws IOException {
+        int b = Arrays.binarySearch(firstKey, key);
+        if (b < 0) b = -b - 2;
+        if (b < 0) return -1;
+        decode(b);
+        int[] p = {0};
+        long k = firstKey[b];
+        while (true) {
+            if (p[0] > 0) {
+                if (p[0] >= rawLength[b]) return -1;
+                k += readVarLong(p) + 1;
+            }
+            if (k > key) return -1;
+            if (k == key) return p[0];
+            // skip the node
+            int degree = readDegree(p);
+            for (int i = 0; i < degree; i++) readVarLong(p);
+            for (int i = 0; i < degree; i++) readWeight(p);
+        }
+    }
+
+    private void decode(int b) throws IOException {
+        if (closed) throw new IOException("the compressed graph is closed");
+        if (cached == b) return;
+        cached = -1;
+        if (block.length < rawLength[b]) block = new byte[rawLength[b]];
+        byte[] stored = new byte[length[b]];
+        ByteBuffer in = file.duplicate();
+        in.position((int) position[b]);
+        in.get(stored);
+        if (length[b] == rawLength[b]) System.arraycopy(stored, 0, block, 0, length[b]);
+        else {
+            if (inflater == null) inflater = new Inflater();
+            inflater.reset();
+            inflater.setInput(stored);
+            try {
+                if (inflater.inflate(block, 0, rawLength[b]) != rawLength[b]) throw corrupt(b);
+            }
+            catch (DataFormatException e) {
+                throw new IOException("the compressed graph file is corrupt (block " + b + ")", e);
+            }
+        }
+        cached = b;
+    }
+
+    private IOException corrupt(int b) {
+        return new IOException("the compressed graph file is corrupt (block " + b + ")");
+    }
+
+    // the degree of a node, at most the bytes that are left in the block
+    private int readDegree(int[] p) throws IOException {
+        long degree = readVarLong(p);
+        if (degree < 0 || degree > rawLength[cached] - p[0]) throw corrupt(cached);
+        return (int) degree;
+    }
+
+    private double readWeight(int[] p) throws IOException {
+        if (dictionary != null) {
+            long code = readVarLong(p);
+            if (code >= dictionary.length) throw corrupt(cached);
+            return dictionary[(int) code];
+        }
+        if (p[0] + (coding == Weights.EXACT ? 8 : coding == Weights.FLOAT ? 4 : 0) > rawLength[cached]) throw corrupt(cached);
+        switch (coding) {
+            case EXACT: {
+                long bits = 0;
+                for (int i = 0; i < 8; i++) bits = bits << 8 | (block[p[0]++] & 0xff);
+                return Double.longBitsToDouble(bits);
+            }
+            case FLOAT: {
+                int bits = 0;
+                for (int i = 0; i < 4; i++) bits = bits << 8 | (block[p[0]++] & 0xff);
+                return Float.intBitsToFloat(bits);
+            }
+            default:
+                return readVarLong(p) * step;
+        }
+    }
+
+    private long readVarLong(int[] p) throws IOException {
+        long v = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (p[0] >= rawLength[cached] || shift > 63) throw corrupt(cached);
+            byte b = block[p[0]++];
+            v |= (long) (b & 0x7f) << shift;
+            if (b >= 0) return v;
+        }
+    }
+
+    // the distinct weights (after the coding) -> their codes by descending frequency,
+    // null if there are too many or the dictionary is not smaller than the plain weights
+    private static Map<Double, Integer> dictionary(WGraph_CSR g, Weights coding, double step) {
+        HashMap<Double, int[]> count = new HashMap<>();
+        int m2 = 2 * g.edgeSize();
+        for (int e = 0; e < m2; e++) {
+            int[] c = count.computeIfAbsent(quantize(g.weightAt(e), coding, step), w -> new int[1]);
+            c[0]++;
+            if (count.size() > MAX_DICTIONARY) return null;
+        }
+        Double[] ws = count.keySet().toArray(new Double[0]);
+        Arrays.sort(ws, (a, b) -> Integer.compare(count.get(b)[0], count.get(a)[0]));
+        long dictionaryBytes = 8L * ws.length, plainBytes = 0;
+        for (int i = 0; i < ws.length; i++) {
+            int c = count.get(ws[i])[0];
+            dictionaryBytes += (long) c * varLongSize(i);
+            plainBytes += (long) c * (coding == Weights.EXACT ? 8 : coding == Weights.FLOAT ? 4 : varLongSize(Math.round(ws[i] / step)));
+        }
+        if (dictionaryBytes >= plainBytes) return null;
+        Map<Double, Integer> codes = new HashMap<>();
+        for (int i = 0; i < ws.length; i++) codes.put(ws[i], i);
+        return codes;
+    }
+
+    private static double quantize(double w, Weights coding, double step) {
+        switch (coding) {
+            case FLOAT: return (float) w;
+            case FIXED: return Math.round(w / step) * step;
+            default: return w;
+        }
+    }
+
+    private static long zigzag(long v) {
+        return v << 1 ^ v >> 63;
+    }
+
+    private static long unzigzag(long v) {
+        return v >>> 1 ^ -(v & 1);
+    }
+
+    private static int varLongSize(long v) {
+        int size = 1;
+        while ((v >>>= 7) != 0) size++;
+        return size;
+    }
+
+    /**
+     * A growable byte array (big endian).
+     */
+    private static class Bytes {
+        private byte[] data;
+        private int size;
+
+        Bytes(int capacity) {
+            data = new byte[capacity];
+        }
+
+        void putVarLong(long v) {
+            ensure(10);
+            while ((v & ~0x7fL) != 0) {
+                data[size++] = (byte) (v & 0x7f | 0x80);
+                v >>>= 7;
+            }
+            data[size++] = (byte) v;
+        }
+
+        void putInt(int v) {
+            ensure(4);
+            for (int shift = 24; shift >= 0; shift -= 8) data[size++] = (byte) (v >>> shift);
+        }
+
+        void putLong(long v) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) data[size++] = (byte) (v >>> shift);
+        }
+
+        private void ensure(int bytes) {
+            if (size + bytes > data.length) data = Arrays.copyOf(data, Math.max(size + bytes, 2 * data.length));
+        }
+    }
+}
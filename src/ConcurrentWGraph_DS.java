@@ -0,0 +1,454 @@
+package ex1.src;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+/**
+ * This class represents a thread safe undirectional weighted graph,
+ * for graphs that are changed by some threads while other threads read them
+ * (e.g. run WGraph_Algo queries).
+ * Reads (getNode, hasEdge, getEdge, getV, forEachNeighbor) take no locks,
+ * the nodes and the adjacency of every node are ConcurrentHashMaps.
+ * The mutations take striped locks: an edge mutation locks the stripes of its two nodes
+ * (in stripe order, so there are no deadlocks), so both halves of an edge and the counters
+ * change together, and mutations of unrelated nodes run in parallel.
+ * The counters (nodes, edges, MC) are atomic.
+ * Iteration (getV(), getV(node_id)) is weakly consistent - it never throws
+ * ConcurrentModificationException, and may or may not reflect changes made after it started.
+ */
+public class ConcurrentWGraph_DS implements weighted_graph,java.io.Serializable {
+    private static final int STRIPES = 64;
+    private final ConcurrentHashMap<Integer, NodeInfo> myWeightedGraph;
+    private final ReentrantLock[] locks;
+    private final AtomicInteger numOfNodes;
+    private final AtomicInteger numOfEdges;
+    private final AtomicInteger MC;
+
+    public ConcurrentWGraph_DS() {
+        myWeightedGraph = new ConcurrentHashMap<>();
+        locks = new ReentrantLock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) locks[i] = new ReentrantLock();
+        numOfNodes = new AtomicInteger();
+        numOfEdges = new AtomicInteger();
+        MC = new AtomicInteger();
+    }
+    /**
+     * return the node_data by the node_id,
+     * @param key - the node_id
+     * @return the node_data by the node_id, null if none.
+     */
+    @Override
+    public node_info getNode(int key) {
+        return myWeightedGraph.get(key);
+    }
+    /**
+     * return true iff (if and only if) there is an edge between node1 and node2
+     * Note: this method should run in O(1) time.
+     * @param node1
+     * @param node2
+     * @return
+     */
+    @Override
+    public boolean hasEdge(int node1, int node2) {
+        NodeInfo nd1 = myWeightedGraph.get(node1);
+        return nd1 != null && nd1.ni.containsKey(node2);
+    }
+    /**
+     * return the weight if the edge (node1, node1). In case
+     * there is no such edge - should return -1
+     * Note: this method should run in O(1) time.
+     * @param node1
+     * @param node2
+     * @return
+     */
+    @Override
+    public double getEdge(int node1, int node2) {
+        NodeInfo nd1 = myWeightedGraph.get(node1);
+        if (nd1 == null) return -1;
+        if (node1 == node2) return 0;
+        Double w = nd1.ni.get(node2);
+        return w == null ? -1 : w;
+    }
+    /**
+     * add a new node to the graph with the given key.
+     * Note: this method should run in O(1) time.
+     * Note2: if there is already a node with such a key -> no action should be performed.
+     * @param key
+     */
+    @Override
+    public void addNode(int key) {
+        if (insert(key)) MC.incrementAndGet();
+    }
+    /**
+     * Connect an edge between node1 and node2, with an edge with weight >=0.
+     * Note: this method should run in O(1) time.
+     * Note2: if the edge node1-node2 already exists - the method simply updates the weight of the edge.
+     */
+    @Override
+    public void connect(int node1, int node2, double w) {
+        if (link(node1, node2, w)) MC.incrementAndGet();
+    }
+    /**
+     * Apply a batch of edges: for every e, add the nodes src[e] and dst[e] (if missing)
+     * and connect the edge src[e]-dst[e] with the weight w[e]
+     * (an edge that appears more than once in the batch is connected once, with its last weight).
+     * Every edge takes the locks of its own nodes (as connect does), so the batch is not atomic:
+     * other threads may see a part of it. The MC is incremented once, after the whole batch.
+     * @param src - the first nodes of the edges
+     * @param dst - the second nodes of the edges
+     * @param w - the weights of the edges
+     */
+    @Override
+    public void connectAll(int[] src, int[] dst, double[] w) {
+        if (dst.length != src.length || w.length != src.length) throw new IllegalArgumentException("the batch arrays differ in length");
+        // the last appearance of every edge in the batch, the others are not connected
+        HashMap<Long, Integer> last = new HashMap<>();
+        for (int e = 0; e < src.length; e++) {
+            if (src[e] != dst[e] && w[e] >= 0) last.put(edgeKey(src[e], dst[e]), e);
+        }
+        boolean changed = false;
+        for (int e = 0; e < src.length; e++) {
+            changed |= insert(src[e]);
+            changed |= insert(dst[e]);
+            Integer l = last.get(edgeKey(src[e], dst[e]));
+            if (l != null && l == e) changed |= link(src[e], dst[e], w[e]);
+        }
+        if (changed) MC.incrementAndGet();
+    }
+    /**
+     * This method return a weakly consistent view of all the nodes in the graph.
+     * Note: this method should run in O(1) tim
+     * @return Collection<node_data>
+     */
+    @Override
+    public Collection<node_info> getV() {
+        return new AbstractCollection<node_info>() {
+            @Override
+            public Iterator<node_info> iterator() {
+                Iterator<NodeInfo> i = myWeightedGraph.values().iterator();
+                return new Iterator<node_info>() {
+                    @Override
+                    public boolean hasNext() {
+                        return i.hasNext();
+                    }
+
+                    @Override
+                    public node_info next() {
+                        return i.next();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return myWeightedGraph.size();
+            }
+        };
+    }
+    /**
+     *
+     * This method returns a weakly consistent view of all the
+     * nodes connected to node_id
+     * Note: this method can run in O(k) time, k - being the degree of node_id.
+     * @return Collection<node_data>
+     */
+    @Override
+    public Collection<node_info> getV(int node_id) {
+        NodeInfo node = myWeightedGraph.get(node_id);
+        if (node == null) return null;
+        return new AbstractCollection<node_info>() {
+            @Override
+            public Iterator<node_info> iterator() {
+                Iterator<Integer> i = node.ni.keySet().iterator();
+                return new Iterator<node_info>() {
+                    private node_info next = advance();
+
+                    // skip the neighbors that were removed after their key was read
+                    private node_info advance() {
+                        while (i.hasNext()) {
+                            node_info n = myWeightedGraph.get(i.next());
+                            if (n != null) return n;
+                        }
+                        return null;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return next != null;
+                    }
+
+                    @Override
+                    public node_info next() {
+                        if (next == null) throw new NoSuchElementException();
+                        node_info n = next;
+                        next = advance();
+                        return n;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return node.ni.size();
+            }
+        };
+    }
+    /**
+     * Visit all the edges of node_id in one pass:
+     * for every neighbor ni of node_id, call visitor.visit(ni, w(node_id,ni)).
+     * Note: this method can run in O(k) time, k - being the degree of node_id.
+     * @param node_id
+     * @param visitor
+     */
+    @Override
+    public void forEachNeighbor(int node_id, edge_visitor visitor) {
+        NodeInfo node = myWeightedGraph.get(node_id);
+        if (node == null) return;
+        node.ni.forEach(visitor::visit);
+    }
+    /**
+     * Delete the node (with the given ID) from the graph -
+     * and removes all edges which starts or ends at this node.
+     * The node is first marked as removed (so no new edge can reach it),
+     * then its edges are removed one by one, and at last the node itself.
+     * This method should run in O(n), |V|=n, as all the edges should be removed.
+     * @return the data of the removed node (null if none).
+     * @param key
+     */
+    @Override
+    public node_info removeNode(int key) {
+        NodeInfo node;
+        ReentrantLock lock = locks[stripe(key)];
+        lock.lock();
+        try {
+            node = myWeightedGraph.get(key);
+            if (node == null || node.removed) return null;
+            node.removed = true;
+        }
+        finally {
+            lock.unlock();
+        }
+        for (Integer ni : node.ni.keySet()) {
+            lock(key, ni);
+            try {
+                if (node.ni.remove(ni) != null) {
+                    NodeInfo nd = myWeightedGraph.get(ni);
+                    if (nd != null) nd.ni.remove(key);
+                    numOfEdges.decrementAndGet();
+                    MC.incrementAndGet();
+                }
+            }
+            finally {
+                unlock(key, ni);
+            }
+        }
+        myWeightedGraph.remove(key, node);
+        numOfNodes.decrementAndGet();
+        MC.incrementAndGet();
+        return node;
+    }
+    /**
+     * Delete the edge from the graph,
+     * Note: this method should run in O(1) time.
+     * @param node1
+     * @param node2
+     */
+    @Override
+    public void removeEdge(int node1, int node2) {
+        if (unlink(node1, node2)) MC.incrementAndGet();
+    }
+    /**
+     * Delete a batch of edges, every edge under the locks of its own nodes (as removeEdge does),
+     * so the batch is not atomic. The MC is incremented once, after the whole batch.
+     * @param node1 - the first nodes of the edges
+     * @param node2 - the second nodes of the edges
+     */
+    @Override
+    public void removeEdges(int[] node1, int[] node2) {
+        if (node1.length != node2.length) throw new IllegalArgumentException("the batch arrays differ in length");
+        boolean changed = false;
+        for (int e = 0; e < node1.length; e++) changed |= unlink(node1[e], node2[e]);
+        if (changed) MC.incrementAndGet();
+    }
+    /** return the number of vertices (nodes) in the graph.
+     * Note: this method should run in O(1) time.
+     * @return
+     */
+    @Override
+    public int nodeSize() {
+        return numOfNodes.get();
+    }
+    /**
+     * return the number of edges (undirectional graph).
+     * Note: this method should run in O(1) time.
+     * @return
+     */
+    @Override
+    public int edgeSize() {
+        return numOfEdges.get();
+    }
+    /**
+     * return the Mode Count - for testing changes in the graph.
+     * Any change in the inner state of the graph should cause an increment in the ModeCount
+     * @return
+     */
+    @Override
+    public int getMC() {
+        return MC.get();
+    }
+
+    private static long edgeKey(int node1, int node2) {
+        return node1 < node2 ? (long) node1 << 32 | (node2 & 0xffffffffL) : (long) node2 << 32 | (node1 & 0xffffffffL);
+    }
+    // add the node without the MC, true iff it was added
+    private boolean insert(int key) {
+        if (myWeightedGraph.containsKey(key)) return false;
+        if (myWeightedGraph.putIfAbsent(key, new NodeInfo(key)) != null) return false;
+        numOfNodes.incrementAndGet();
+        return true;
+    }
+    // connect the edge without the MC, true iff it was added or its weight was changed
+    private boolean link(int node1, int node2, double w) {
+        if (node1 == node2 || !(w >= 0)) return false;
+        lock(node1, node2);
+        try {
+            NodeInfo nd1 = myWeightedGraph.get(node1);
+            NodeInfo nd2 = myWeightedGraph.get(node2);
+            if (nd1 == null || nd2 == null || nd1.removed || nd2.removed) return false;
+            Double old = nd1.ni.put(node2, w);
+            nd2.ni.put(node1, w);
+            if (old == null) numOfEdges.incrementAndGet();
+            return old == null || old != w;
+        }
+        finally {
+            unlock(node1, node2);
+        }
+    }
+    // remove the edge without the MC, true iff it was removed
+    private boolean unlink(int node1, int node2) {
+        if (!hasEdge(node1, node2)) return false;
+        lock(node1, node2);
+        try {
+            NodeInfo nd1 = myWeightedGraph.get(node1);
+            NodeInfo nd2 = myWeightedGraph.get(node2);
+            if (nd1 == null || nd2 == null || nd1.ni.remove(node2) == null) return false;
+            nd2.ni.remove(node1);
+            numOfEdges.decrementAndGet();
+            return true;
+        }
+        finally {
+            unlock(node1, node2);
+        }
+    }
+
+    // lock the stripes of the two nodes, the lower stripe first
+    private void lock(int node1, int node2) {
+        int s1 = stripe(node1), s2 = stripe(node2);
+        locks[Math.min(s1, s2)].lock();
+        if (s1 != s2) locks[Math.max(s1, s2)].lock();
+    }
+
+    private void unlock(int node1, int node2) {
+        int s1 = stripe(node1), s2 = stripe(node2);
+        if (s1 != s2) locks[Math.max(s1, s2)].unlock();
+        locks[Math.min(s1, s2)].unlock();
+    }
+
+    private static int stripe(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    public String toString(){ return String.valueOf(this.myWeightedGraph.values()); }
+
+    public boolean equals(Object g) {
+        if (this == g) return true;
+        if (g == null || getClass() != g.getClass()) return false;
+        ConcurrentWGraph_DS graph = (ConcurrentWGraph_DS) g;
+        return myWeightedGraph.keySet().equals(graph.myWeightedGraph.keySet());
+    }
+
+    public int hashCode() {
+        return Objects.hash(myWeightedGraph.keySet());
+    }
+
+    /**
+     * A node of the graph, the adjacency (neighbor key -> edge weight) is a ConcurrentHashMap.
+     */
+    private static class NodeInfo implements node_info,java.io.Serializable {
+        private final int key_id;
+        private volatile double tag;
+        private volatile String info;
+        private volatile boolean removed;
+        private final ConcurrentHashMap<Integer, Double> ni;
+
+        public NodeInfo(int key) {
+            this.key_id = key;
+            this.ni = new ConcurrentHashMap<>(4);
+        }
+        /**
+         * Return the key (id) associated with this node.
+         * Note: each node_data should have a unique key.
+         * @return
+         */
+        @Override
+        public int getKey() {
+            return this.key_id;
+        }
+        /**
+         * return the remark (meta data) associated with this node.
+         * @return
+         */
+        @Override
+        public String getInfo() {
+            return this.info;
+        }
+        /**
+         * Allows changing the remark (meta data) associated with this node.
+         * @param s
+         */
+        @Override
+        public void setInfo(String s) {
+            this.info = s;
+        }
+        /**
+         * Temporal data (aka distance, color, or state)
+         * which can be used be algorithms
+         * @return
+         */
+        @Override
+        public double getTag() {
+            return this.tag;
+        }
+        /**
+         * Allow setting the "tag" value for temporal marking an node - common
+         * practice for marking by algorithms.
+         * @param t - the new value of the tag
+         */
+        @Override
+        public void setTag(double t) {
+            this.tag = t;
+        }
+
+        public String toString() {
+            return String.valueOf(this.getKey());
+        }
+
+        public boolean equals(Object n) {
+            if (this == n) return true;
+            if (n == null || getClass() != n.getClass()) return false;
+            NodeInfo node= (NodeInfo) n;
+            return key_id == node.key_id;
+        }
+
+        public int hashCode() {
+            return Objects.hash(key_id);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package ex1.src;
+
+import java.util.function.IntUnaryOperator;
+/**
+ * This class represents the connected components of an undirectional graph:
+ * every node has a component id in 0..count()-1, the components are numbered
+ * in the order of their smallest node key.
+ * see WGraph_Algo.connectedComponents().
+ */
+public class ConnectedComponents {
+    private final IntUnaryOperator index; // node key -> node index (negative if none)
+    private final int[] component; // node index -> component id
+    private final int[] sizes;
+
+    ConnectedComponents(IntUnaryOperator index, int[] component, int[] sizes) {
+        this.index = index;
+        this.component = component;
+        this.sizes = sizes;
+    }
+    /**
+     * @return the number of components.
+     */
+    public int count() {
+        return sizes.length;
+    }
+    /**
+     * @param key - a node key
+     * @return the component id of the node, -1 if there is no such node.
+     */
+    public int componentOf(int key) {
+        int i = index.applyAsInt(key);
+        if (i < 0) return -1;
+        return component[i];
+    }
+    /**
+     * @param id - a component id
+     * @return the number of nodes in the component.
+     */
+    public int size(int id) {
+        return sizes[id];
+    }
+    /**
+     * @return the sizes of all the components (by component id).
+     */
+    public int[] sizes() {
+        return sizes.clone();
+    }
+    /**
+     * @param node1
+     * @param node2
+     * @return true iff both nodes exist and are in the same component.
+     */
+    public boolean connected(int node1, int node2) {
+        int c = componentOf(node1);
+        return c != -1 && c == componentOf(node2);
+    }
+}
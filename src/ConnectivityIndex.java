@@ -0,0 +1,209 @@
+package ex1.src;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * This class keeps the connected components of a graph up to date while the graph is changed,
+ * see WGraph_DS.enableConnectivityIndex().
+ * Every node has a component label, so connected(a,b) and count() are O(1).
+ * Inserts are a union-find with union by size: a new edge between two components
+ * relabels the smaller one (a node is relabeled at most log(n) times in insert-only phases).
+ * Deletions: a removed edge u-v may split its component, so two BFS's (from u and from v)
+ * are run in turns, one node at a time, always growing the smaller side. If they meet
+ * nothing changed, else the side that was exhausted first is a new component and is relabeled.
+ * So a deletion costs about the size of the smaller part that it cuts off
+ * (or of the region explored until a replacement path is found).
+ */
+class ConnectivityIndex {
+    private final weighted_graph graph;
+    private final IntObjectMap<Entry> entries;
+    private int count;
+    // BFS state of the deletions: the two queues and the visit marks (mark, mark+1) of the current search
+    private Entry[][] queues = {new Entry[16], new Entry[16]};
+    private final int[] head = new int[2], tail = new int[2];
+    private int mark = 1;
+    private boolean met;
+    private int side;
+    private final edge_visitor expand;
+
+    /**
+     * Build the index of the current graph, O(|V|+|E|+|V|log|V|).
+     * @param graph
+     */
+    ConnectivityIndex(weighted_graph graph) {
+        this.graph = graph;
+        this.entries = new IntObjectMap<>(graph.nodeSize());
+        this.expand = (ni, w) -> visit(entries.get(ni));
+        for (node_info n : graph.getV()) addNode(n.getKey());
+        for (node_info n : graph.getV()) {
+            int key = n.getKey();
+            graph.forEachNeighbor(key, (ni, w) -> {
+                if (key < ni) connect(key, ni);
+            });
+        }
+    }
+    /**
+     * @return the number of connected components.
+     */
+    int count() {
+        return count;
+    }
+    /**
+     * @param node1
+     * @param node2
+     * @return true iff both nodes exist and are in the same component.
+     */
+    boolean connected(int node1, int node2) {
+        Entry e1 = entries.get(node1), e2 = entries.get(node2);
+        return e1 != null && e2 != null && e1.comp == e2.comp;
+    }
+    /**
+     * @param key
+     * @return the number of nodes in the component of the node, 0 if there is no such node.
+     */
+    int componentSize(int key) {
+        Entry e = entries.get(key);
+        return e == null ? 0 : e.comp.size;
+    }
+
+    /** A new node - a new component of its own. */
+    void addNode(int key) {
+        Entry e = new Entry(key);
+        entries.put(key, e);
+        link(e, new Component());
+        count++;
+    }
+    /** A new edge node1-node2 (not called when only the weight changed). */
+    void connect(int node1, int node2) {
+        Component c1 = entries.get(node1).comp, c2 = entries.get(node2).comp;
+        if (c1 == c2) return;
+        Component small = c1.size < c2.size ? c1 : c2;
+        Component big = small == c1 ? c2 : c1;
+        Entry e = small.head;
+        while (e != null) {
+            Entry next = e.next;
+            e.comp = null;
+            link(e, big);
+            e = next;
+        }
+        count--;
+    }
+    /** The edge node1-node2 was removed from the graph. */
+    void removeEdge(int node1, int node2) {
+        split(entries.get(node1), entries.get(node2));
+    }
+    /**
+     * The node was removed from the graph, with its edges to the given neighbors.
+     * Every neighbor is checked against one representative of its current component,
+     * after a split the two sides have different components, so at the end
+     * there are no two representatives with the same component.
+     */
+    void removeNode(int key, int[] neighbors) {
+        Entry e = entries.remove(key);
+        Component c = e.comp;
+        unlink(e);
+        if (c.size == 0) count--;
+        Map<Component, Entry> rep = new IdentityHashMap<>();
+        for (int ni : neighbors) {
+            Entry n = entries.get(ni);
+            Entry r = rep.putIfAbsent(n.comp, n);
+            if (r == null) continue;
+            Component old = r.comp;
+            if (split(r, n)) {
+                //the side that was cut off has a new component, the other keeps old
+                if (r.comp == old) rep.put(n.comp, n);
+                else {
+                    rep.put(old, n);
+                    rep.put(r.comp, r);
+                }
+            }
+        }
+    }
+
+    /**
+     * u and v were in the same component, and may not be anymore,
+     * @return true iff they were split (then the side of the smaller search has a new component).
+     */
+    private boolean split(Entry u, Entry v) {
+        if (mark >= Integer.MAX_VALUE - 2) {
+            for (Entry e : entries.values()) e.mark = 0;
+            mark = 1;
+        }
+        mark += 2;
+        head[0] = head[1] = 0;
+        tail[0] = tail[1] = 0;
+        met = false;
+        side = 0;
+        visit(u);
+        side = 1;
+        visit(v);
+        // grow the side that has seen fewer nodes, until they meet or one side has no more nodes
+        while (!met && head[0] < tail[0] && head[1] < tail[1]) {
+            side = tail[0] <= tail[1] ? 0 : 1;
+            Entry x = queues[side][head[side]++];
+            graph.forEachNeighbor(x.key, expand);
+        }
+        boolean split = !met;
+        if (split) {
+            int s = head[0] == tail[0] ? 0 : 1;
+            Entry[] q = queues[s];
+            Component c = new Component();
+            for (int i = 0; i < tail[s]; i++) {
+                unlink(q[i]);
+                link(q[i], c);
+            }
+            count++;
+        }
+        for (int s = 0; s < 2; s++) Arrays.fill(queues[s], 0, tail[s], null);
+        return split;
+    }
+
+    private void visit(Entry e) {
+        if (met || e.mark == mark + side) return;
+        if (e.mark == mark + (side ^ 1)) {
+            met = true;
+            return;
+        }
+        e.mark = mark + side;
+        if (tail[side] == queues[side].length) {
+            queues[side] = Arrays.copyOf(queues[side], tail[side] * 2);
+        }
+        queues[side][tail[side]++] = e;
+    }
+
+    private static void link(Entry e, Component c) {
+        e.comp = c;
+        e.prev = null;
+        e.next = c.head;
+        if (c.head != null) c.head.prev = e;
+        c.head = e;
+        c.size++;
+    }
+
+    private static void unlink(Entry e) {
+        Component c = e.comp;
+        if (e.prev != null) e.prev.next = e.next;
+        else c.head = e.next;
+        if (e.next != null) e.next.prev = e.prev;
+        c.size--;
+        e.comp = null;
+    }
+
+    private static class Entry {
+        private final int key;
+        private Component comp;
+        private Entry prev, next; // the members of comp
+        private int mark;
+
+        Entry(int key) {
+            this.key = key;
+        }
+    }
+
+    private static class Component {
+        private Entry head;
+        private int size;
+    }
+}
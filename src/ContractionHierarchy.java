@@ -0,0 +1,454 @@
+package ex1.src;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+/**
+ * This class represents a contraction hierarchy of a graph, for fast shortest path queries
+ * on large graphs that do not change.
+ * Preprocessing: the nodes are contracted one by one, in the order of their priority
+ * (edge difference + contracted neighbors, updated lazily: a node that is taken from the queue
+ * is put back if its priority grew past the next one). Contracting v removes it from
+ * the remaining graph, and for every two neighbors u, x of v whose shortest path is u-v-x
+ * (no shorter "witness" path was found by a small local Dijkstra) adds a shortcut u-x
+ * with the weight w(u,v)+w(v,x). The rank of a node is its place in that order.
+ * The search graph keeps, for every node, its edges (original edges and shortcuts) to the
+ * nodes of higher rank, in CSR arrays (rows sorted by the other end).
+ * Query: a bidirectional Dijkstra where both searches go only up the hierarchy, so each
+ * settles a small part of the graph (and stall on demand prunes it further).
+ * The shortcuts of the found path are unpacked (recursively, by their middle node)
+ * back into a path of the original graph.
+ * The hierarchy belongs to the graph at the time it was built (see getMC()).
+ * Note: the witness searches are limited, so a few shortcuts may be redundant,
+ * that costs time but never correctness. Dense graphs (e.g. random graphs with a large
+ * average degree) contract poorly - the method is meant for road like (sparse, near planar) graphs.
+ */
+public class ContractionHierarchy {
+    private static final int WITNESS_LIMIT = 500;  // settled nodes of a witness search
+    private static final int SIMULATE_LIMIT = 50;  // ... when only the priority is computed
+    private final weighted_graph graph;
+    private final WGraph_CSR snapshot;
+    private final int[] rank;
+    // the upward search graph: the edges of i are offsets[i]..offsets[i+1]-1
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] weights;
+    private final int[] middles; // the contracted node of a shortcut, -1 for an original edge
+    private final int numOfShortcuts;
+    // the search trees that no query uses (see TreePool)
+    private final TreePool pool = new TreePool();
+
+    /**
+     * Build the contraction hierarchy of the graph.
+     * @param g - the graph (its node_info are the nodes of the returned paths)
+     */
+    public ContractionHierarchy(weighted_graph g) {
+        this(g instanceof WGraph_CSR ? (WGraph_CSR) g : new WGraph_CSR(g), g);
+    }
+    /**
+     * Build the contraction hierarchy of a snapshot of g.
+     * @param snapshot - a snapshot of g
+     * @param g - the graph
+     */
+    ContractionHierarchy(WGraph_CSR snapshot, weighted_graph g) {
+        this.graph = g;
+        this.snapshot = snapshot;
+        int n = snapshot.nodeSize();
+        Contraction c = new Contraction(snapshot);
+        c.run();
+        this.rank = c.rank;
+        this.numOfShortcuts = c.shortcuts;
+        offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) offsets[i + 1] = offsets[i] + c.upDeg[i];
+        int m = offsets[n];
+        targets = new int[m];
+        weights = new double[m];
+        middles = new int[m];
+        long[] order = new long[0];
+        for (int i = 0; i < n; i++) {
+            int d = c.upDeg[i], base = offsets[i];
+            // sort the row by the other end
+            if (order.length < d) order = new long[Math.max(d, 2 * order.length)];
+            for (int j = 0; j < d; j++) order[j] = (long) c.upNb[i][j] << 32 | j;
+            Arrays.sort(order, 0, d);
+            for (int j = 0; j < d; j++) {
+                int p = (int) order[j];
+                targets[base + j] = c.upNb[i][p];
+                weights[base + j] = c.upW[i][p];
+                middles[base + j] = c.upMid[i][p];
+            }
+            c.upNb[i] = null;
+            c.upW[i] = null;
+            c.upMid[i] = null;
+        }
+    }
+    /**
+     * @return the number of shortcuts that were added.
+     */
+    public int shortcuts() {
+        return numOfShortcuts;
+    }
+    /**
+     * @return the MC of the graph at the time the hierarchy was built.
+     */
+    public int getMC() {
+        return snapshot.getMC();
+    }
+    /**
+     * returns the length of the shortest path between src to dest
+     * Note: if no such path --> returns -1
+     * @param src - start node
+     * @param dest - end (target) node
+     * @return
+     */
+    public double shortestPathDist(int src, int dest) {
+        int s = snapshot.indexOf(src), d = snapshot.indexOf(dest);
+        if (s < 0 || d < 0) return -1;
+        if (s == d) return 0;
+        ShortestPathTree[] t = pool.take(snapshot.nodeSize());
+        try {
+            int meet = search(s, d, t[0], t[1]);
+            if (meet == -1) return -1;
+            return t[0].dist[meet] + t[1].dist[meet];
+        }
+        finally {
+            pool.giveBack(t, snapshot.nodeSize());
+        }
+    }
+    /**
+     * returns the the shortest path between src to dest - as an ordered List of nodes
+     * of the graph: src--> n1-->n2-->...dest, the shortcuts are unpacked.
+     * Note if no such path --> returns null;
+     * @param src - start node
+     * @param dest - end (target) node
+     * @return
+     */
+    public List<node_info> shortestPath(int src, int dest) {
+        int s = snapshot.indexOf(src), d = snapshot.indexOf(dest);
+        if (s < 0 || d < 0) return null;
+        LinkedList<node_info> path = new LinkedList<>();
+        path.add(graph.getNode(src));
+        if (s == d) return path;
+        ShortestPathTree[] t = pool.take(snapshot.nodeSize());
+        try {
+            ShortestPathTree f = t[0], b = t[1];
+            int meet = search(s, d, f, b);
+            if (meet == -1) return null;
+            // the hierarchy nodes: src .. meet (by f.prev, backwards) and meet .. dest (by b.prev)
+            int[] up = new int[16];
+            int k = 0;
+            for (int i = meet; i != -1; i = f.prev[i]) {
+                if (k == up.length) up = Arrays.copyOf(up, 2 * k);
+                up[k++] = i;
+            }
+            int[] stack = new int[16];
+            for (int j = k - 1; j > 0; j--) stack = unpack(up[j], up[j - 1], path, stack);
+            for (int i = meet; b.prev[i] != -1; i = b.prev[i]) stack = unpack(i, b.prev[i], path, stack);
+            return path;
+        }
+        finally {
+            pool.giveBack(t, snapshot.nodeSize());
+        }
+    }
+    /**
+     * Drop the search trees that are kept between the queries (O(|V|) each),
+     * the next queries allocate new ones.
+     */
+    public void release() {
+        pool.clear();
+    }
+    /**
+     * Bidirectional upward Dijkstra: both searches relax only the edges to higher ranks,
+     * a side stops when its frontier key is at least mu (the best path seen so far).
+     * @return the index of the top node of a shortest path, -1 if there is no path.
+     */
+    private int search(int s, int d, ShortestPathTree f, ShortestPathTree b) {
+        double mu = Double.POSITIVE_INFINITY;
+        int meet = -1;
+        f.reach(s, 0, -1);
+        f.heap.push(s, 0);
+        b.reach(d, 0, -1);
+        b.heap.push(d, 0);
+        boolean forward = true;
+        while (true) {
+            if (!f.heap.isEmpty() && f.heap.key(f.heap.peek()) >= mu) f.heap.clear();
+            if (!b.heap.isEmpty() && b.heap.key(b.heap.peek()) >= mu) b.heap.clear();
+            if (f.heap.isEmpty() && b.heap.isEmpty()) break;
+            if (forward ? f.heap.isEmpty() : b.heap.isEmpty()) forward = !forward;
+            ShortestPathTree t = forward ? f : b, o = forward ? b : f;
+            forward = !forward;
+            int u = t.heap.poll();
+            t.settled.set(u);
+            double du = t.dist[u];
+            if (du + o.dist[u] < mu) {
+                mu = du + o.dist[u];
+                meet = u;
+            }
+            if (stalled(t, u, du)) continue;
+            for (int e = offsets[u], end = offsets[u + 1]; e < end; e++) {
+                int v = targets[e];
+                double alt = du + weights[e];
+                if (alt < t.dist[v]) {
+                    t.reach(v, alt, u);
+                    t.heap.push(v, alt);
+                    if (alt + o.dist[v] < mu) {
+                        mu = alt + o.dist[v];
+                        meet = v;
+                    }
+                }
+            }
+        }
+        return meet;
+    }
+    /**
+     * Stall on demand: the row of u holds its edges to the higher ranked nodes - the nodes
+     * that can reach u in a search that goes up. If one of them is closer to the source
+     * than du through its edge, du is not the distance of u, and a shortest path never
+     * goes up through u, so its edges are not relaxed.
+     */
+    private boolean stalled(ShortestPathTree t, int u, double du) {
+        for (int e = offsets[u], end = offsets[u + 1]; e < end; e++) {
+            if (t.dist[targets[e]] + weights[e] < du) return true;
+        }
+        return false;
+    }
+    /**
+     * Append to the path the original nodes after a, up to b, of the hierarchy edge a-b.
+     * @return the stack (it may grow)
+     */
+    private int[] unpack(int a, int b, LinkedList<node_info> path, int[] stack) {
+        int top = 0;
+        stack[top++] = a;
+        stack[top++] = b;
+        while (top > 0) {
+            int y = stack[--top], x = stack[--top];
+            int m = middles[edge(x, y)];
+            if (m == -1) {
+                path.add(graph.getNode(snapshot.keyAt(y)));
+                continue;
+            }
+            if (top + 4 > stack.length) stack = Arrays.copyOf(stack, 2 * stack.length);
+            // x-m first, then m-y
+            stack[top++] = m;
+            stack[top++] = y;
+            stack[top++] = x;
+            stack[top++] = m;
+        }
+        return stack;
+    }
+
+    // the position of the edge x-y, in the row of the lower ranked node
+    private int edge(int x, int y) {
+        if (rank[x] > rank[y]) {
+            int tmp = x;
+            x = y;
+            y = tmp;
+        }
+        return Arrays.binarySearch(targets, offsets[x], offsets[x + 1], y);
+    }
+
+    /**
+     * The state of the preprocessing: the remaining graph (the edges between the nodes that
+     * were not contracted yet, including the shortcuts), and the upward edges of the contracted nodes.
+     */
+    private static class Contraction {
+        private final int n;
+        private final int[][] nb;
+        private final double[][] w;
+        private final int[][] mid;
+        private final int[] deg;
+        private final int[] deleted; // contracted neighbors
+        private final int[] rank;
+        private final int[][] upNb;
+        private final double[][] upW;
+        private final int[][] upMid;
+        private final int[] upDeg;
+        private final ShortestPathTree t;
+        private final int[] target; // target[x] == stamp: x is a target of the current witness search
+        private int stamp;
+        private int shortcuts;
+        // the shortcuts of the node being contracted: (u, x, weight)
+        private int[] su = new int[16], sx = new int[16];
+        private double[] sw = new double[16];
+        private int numOfPending;
+
+        Contraction(WGraph_CSR g) {
+            n = g.nodeSize();
+            nb = new int[n][];
+            w = new double[n][];
+            mid = new int[n][];
+            deg = new int[n];
+            deleted = new int[n];
+            rank = new int[n];
+            upNb = new int[n][];
+            upW = new double[n][];
+            upMid = new int[n][];
+            upDeg = new int[n];
+            t = new ShortestPathTree(n);
+            target = new int[n];
+            for (int i = 0; i < n; i++) {
+                int d = g.end(i) - g.begin(i);
+                nb[i] = new int[Math.max(d, 1)];
+                w[i] = new double[Math.max(d, 1)];
+                mid[i] = new int[Math.max(d, 1)];
+                for (int e = g.begin(i), j = 0; j < d; e++, j++) {
+                    nb[i][j] = g.neighborAt(e);
+                    w[i][j] = g.weightAt(e);
+                    mid[i][j] = -1;
+                }
+                deg[i] = d;
+            }
+        }
+
+        void run() {
+            IndexMinHeap queue = new IndexMinHeap(n);
+            for (int v = 0; v < n; v++) queue.push(v, priority(v));
+            int r = 0;
+            while (!queue.isEmpty()) {
+                int v = queue.poll();
+                // lazy update: the priority may have grown since v was pushed
+                double p = priority(v);
+                if (!queue.isEmpty() && p > queue.key(queue.peek())) {
+                    queue.push(v, p);
+                    continue;
+                }
+                contract(v);
+                rank[v] = r++;
+            }
+        }
+
+        private double priority(int v) {
+            int added = witnesses(v, SIMULATE_LIMIT);
+            numOfPending = 0;
+            return 2.0 * (added - deg[v]) + deleted[v];
+        }
+
+        private void contract(int v) {
+            witnesses(v, WITNESS_LIMIT);
+            int d = deg[v];
+            upNb[v] = Arrays.copyOf(nb[v], d);
+            upW[v] = Arrays.copyOf(w[v], d);
+            upMid[v] = Arrays.copyOf(mid[v], d);
+            upDeg[v] = d;
+            for (int j = 0; j < d; j++) {
+                int u = nb[v][j];
+                remove(u, v);
+                deleted[u]++;
+            }
+            nb[v] = null;
+            w[v] = null;
+            mid[v] = null;
+            deg[v] = 0;
+            for (int k = 0; k < numOfPending; k++) {
+                if (add(su[k], sx[k], sw[k], v)) shortcuts++;
+            }
+            numOfPending = 0;
+        }
+        /**
+         * For every two neighbors u, x of v: a Dijkstra from u that does not pass v
+         * (at most limit settled nodes) looks for a path to x that is not longer than u-v-x,
+         * if there is none the shortcut u-x is pending.
+         * @return the number of pending shortcuts
+         */
+        private int witnesses(int v, int limit) {
+            numOfPending = 0;
+            int d = deg[v];
+            int[] nv = nb[v];
+            double[] wv = w[v];
+            for (int i = 0; i < d - 1; i++) {
+                int u = nv[i];
+                double max = 0;
+                for (int j = i + 1; j < d; j++) max = Math.max(max, wv[j]);
+                double maxVia = wv[i] + max;
+                stamp++;
+                for (int j = i + 1; j < d; j++) target[nv[j]] = stamp;
+                int remaining = d - i - 1;
+                t.reset();
+                t.reach(u, 0, -1);
+                t.heap.push(u, 0);
+                int settled = 0;
+                while (!t.heap.isEmpty() && settled++ < limit) {
+                    int x = t.heap.poll();
+                    double dx = t.dist[x];
+                    if (dx > maxVia) break;
+                    // the distances of all the targets are final
+                    if (target[x] == stamp && --remaining == 0) break;
+                    for (int k = 0; k < deg[x]; k++) {
+                        int y = nb[x][k];
+                        if (y == v) continue;
+                        double alt = dx + w[x][k];
+                        if (alt <= maxVia && alt < t.dist[y]) {
+                            t.reach(y, alt, x);
+                            t.heap.push(y, alt);
+                        }
+                    }
+                }
+                for (int j = i + 1; j < d; j++) {
+                    double via = wv[i] + wv[j];
+                    if (t.dist[nv[j]] > via) pending(u, nv[j], via);
+                }
+            }
+            t.reset();
+            return numOfPending;
+        }
+
+        private void pending(int u, int x, double weight) {
+            if (numOfPending == su.length) {
+                su = Arrays.copyOf(su, 2 * numOfPending);
+                sx = Arrays.copyOf(sx, 2 * numOfPending);
+                sw = Arrays.copyOf(sw, 2 * numOfPending);
+            }
+            su[numOfPending] = u;
+            sx[numOfPending] = x;
+            sw[numOfPending] = weight;
+            numOfPending++;
+        }
+
+        // add the shortcut u-x through m, or make the edge u-x lighter, true if it is a new edge
+        private boolean add(int u, int x, double weight, int m) {
+            int j = find(u, x);
+            if (j >= 0) {
+                if (weight < w[u][j]) {
+                    w[u][j] = weight;
+                    mid[u][j] = m;
+                    int i = find(x, u);
+                    w[x][i] = weight;
+                    mid[x][i] = m;
+                }
+                return false;
+            }
+            append(u, x, weight, m);
+            append(x, u, weight, m);
+            return true;
+        }
+
+        private void append(int u, int x, double weight, int m) {
+            int d = deg[u];
+            if (d == nb[u].length) {
+                nb[u] = Arrays.copyOf(nb[u], 2 * d);
+                w[u] = Arrays.copyOf(w[u], 2 * d);
+                mid[u] = Arrays.copyOf(mid[u], 2 * d);
+            }
+            nb[u][d] = x;
+            w[u][d] = weight;
+            mid[u][d] = m;
+            deg[u] = d + 1;
+        }
+
+        private void remove(int u, int x) {
+            int j = find(u, x);
+            int last = --deg[u];
+            nb[u][j] = nb[u][last];
+            w[u][j] = w[u][last];
+            mid[u][j] = mid[u][last];
+        }
+
+        private int find(int u, int x) {
+            int[] row = nb[u];
+            for (int j = 0; j < deg[u]; j++) {
+                if (row[j] == x) return j;
+            }
+            return -1;
+        }
+    }
+}
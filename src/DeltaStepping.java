@@ -0,0 +1,287 @@
+package ex1.src;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+/**
+ * This class represents a parallel single source shortest path search (delta-stepping,
+ * Meyer and Sanders) over a WGraph_CSR snapshot, the backend of WGraph_Algo.Search.DELTA_STEPPING.
+ * The nodes are kept in buckets of width delta by their tentative distance, and the buckets
+ * are processed in order: the light edges (w <= delta) of the nodes of the current bucket
+ * are relaxed until the bucket stays empty, then the heavy edges of all the nodes that were
+ * in it. Every such step relaxes all the edges of a frontier in parallel (fork join tasks
+ * over chunks of the frontier), the distances are updated by compare and set, and the
+ * improved nodes are put in their buckets between the steps.
+ * A non negative double compares like its bits as a long, so the distances are an AtomicLongArray.
+ * The predecessors are not kept (the updates race), a path is rebuilt from the distances
+ * by following the tight edges (d(u) + w(u,v) == d(v)) back to the source.
+ * An engine is reused by the searches on the same snapshot: a search resets only the nodes
+ * that the previous one reached.
+ */
+class DeltaStepping {
+    private static final int GRAIN = 256; // frontier nodes per task
+    private static final long INFINITY = Double.doubleToLongBits(Double.POSITIVE_INFINITY);
+    private final WGraph_CSR g;
+    private final ForkJoinPool pool;
+    private final double delta;
+    private final AtomicLongArray dist;
+    private final int[] mark;
+    private int stamp;
+    // the nodes whose distance is not infinity (each once)
+    private final IntList reached = new IntList();
+
+    /**
+     * @param g - the snapshot of the graph
+     * @param pool - the pool that relaxes the edges
+     * @param delta - the width of a bucket (> 0)
+     */
+    DeltaStepping(WGraph_CSR g, ForkJoinPool pool, double delta) {
+        this.g = g;
+        this.pool = pool;
+        this.delta = delta;
+        this.dist = new AtomicLongArray(g.nodeSize());
+        this.mark = new int[g.nodeSize()];
+        for (int i = 0; i < mark.length; i++) dist.lazySet(i, INFINITY);
+    }
+    /**
+     * @return the snapshot of the graph that this engine searches.
+     */
+    WGraph_CSR getGraph() {
+        return g;
+    }
+    /**
+     * The default bucket width: the mean edge weight (of up to 4096 edges, evenly spaced),
+     * 1 for a graph without positive weights.
+     * @param g - the snapshot of the graph
+     * @return delta
+     */
+    static double defaultDelta(WGraph_CSR g) {
+        int m = 2 * g.edgeSize();
+        if (m == 0) return 1;
+        int step = Math.max(1, m / 4096);
+        double sum = 0;
+        int count = 0;
+        for (int e = 0; e < m; e += step, count++) sum += g.weightAt(e);
+        return sum > 0 ? sum / count : 1;
+    }
+    /**
+     * Compute the distances from src, until the distance of dest is final.
+     * @param src - the index of the start node
+     * @param dest - the index of the end node (-1 for all the nodes)
+     */
+    void run(int src, int dest) {
+        for (int k = 0; k < reached.size; k++) dist.lazySet(reached.items[k], INFINITY);
+        reached.size = 0;
+        dist.set(src, 0);
+        reached.add(src);
+        TreeMap<Long, IntList> buckets = new TreeMap<>();
+        buckets.put(0L, IntList.of(src));
+        while (!buckets.isEmpty()) {
+            Map.Entry<Long, IntList> first = buckets.pollFirstEntry();
+            long b = first.getKey();
+            // the nodes of the buckets before b are final
+            if (dest >= 0 && (long) (dist(dest) / delta) < b) break;
+            int[] frontier = distribute(first.getValue(), b, buckets);
+            while (frontier.length > 0) {
+                IntList inBucket = new IntList();
+                while (frontier.length > 0) {
+                    inBucket.addAll(frontier);
+                    frontier = distribute(relax(frontier, true), b, buckets);
+                }
+                // a heavy edge (w > delta) may still round into bucket b, then the bucket is repeated
+                frontier = distribute(relax(inBucket.distinct(mark, ++stamp), false), b, buckets);
+            }
+        }
+    }
+    /**
+     * @param i - a node index
+     * @return the distance of the node (after run), infinity if not reached.
+     */
+    double dist(int i) {
+        return Double.longBitsToDouble(dist.get(i));
+    }
+    /**
+     * Rebuild a shortest path from src to dest (after run) by a DFS over the tight edges from dest,
+     * every node that was reached has such an edge from the node that set its distance.
+     * @param src - the index of the start node
+     * @param dest - the index of the end node, reached by the search
+     * @return the indexes of the path, src first.
+     */
+    int[] path(int src, int dest) {
+        stamp++;
+        int[] stack = new int[16];
+        int[] next = new int[16]; // the next edge to try of every node on the stack
+        int top = 0;
+        stack[top] = dest;
+        next[top++] = g.begin(dest);
+        mark[dest] = stamp;
+        while (stack[top - 1] != src) {
+            int v = stack[top - 1];
+            double dv = dist(v);
+            int e = next[top - 1], end = g.end(v), u = -1;
+            for (; e < end; e++) {
+                int x = g.neighborAt(e);
+                if (mark[x] != stamp && dist(x) + g.weightAt(e) == dv) {
+                    u = x;
+                    break;
+                }
+            }
+            next[top - 1] = e + 1;
+            if (u == -1) {
+                top--; // a dead end of zero weight edges, back track
+                continue;
+            }
+            if (top == stack.length) {
+                stack = Arrays.copyOf(stack, 2 * top);
+                next = Arrays.copyOf(next, 2 * top);
+            }
+            mark[u] = stamp;
+            stack[top] = u;
+            next[top++] = g.begin(u);
+        }
+        int[] path = new int[top];
+        for (int k = 0; k < top; k++) path[k] = stack[top - 1 - k];
+        return path;
+    }
+
+    /**
+     * Put every node of the list in the bucket of its current distance,
+     * @return the (distinct) nodes of bucket b - the next frontier.
+     */
+    private int[] distribute(IntList nodes, long b, TreeMap<Long, IntList> buckets) {
+        IntList frontier = new IntList();
+        stamp++;
+        for (int k = 0; k < nodes.size; k++) {
+            int v = nodes.items[k];
+            long bv = (long) (dist(v) / delta);
+            if (bv == b) {
+                if (mark[v] != stamp) {
+                    mark[v] = stamp;
+                    frontier.add(v);
+                }
+            }
+            else if (bv > b) buckets.computeIfAbsent(bv, key -> new IntList()).add(v);
+        }
+        return frontier.toArray();
+    }
+    /**
+     * Relax the light (or heavy) edges of the nodes in parallel,
+     * @return the nodes whose distance was improved (maybe more than once).
+     */
+    private IntList relax(int[] nodes, boolean light) {
+        int chunks = (nodes.length + GRAIN - 1) / GRAIN;
+        IntList[] improved = new IntList[chunks], first = new IntList[chunks];
+        if (chunks == 1) new Relax(nodes, light, improved, first, 0, 1).compute();
+        else pool.invoke(new Relax(nodes, light, improved, first, 0, chunks));
+        IntList all = new IntList();
+        for (IntList l : improved) all.addAll(l);
+        for (IntList l : first) reached.addAll(l);
+        return all;
+    }
+
+    /**
+     * The relaxation of the chunks lo..hi-1 of a frontier, split in halves down to a single chunk.
+     */
+    private class Relax extends RecursiveAction {
+        private final int[] nodes;
+        private final boolean light;
+        private final IntList[] improved, first; // the improved nodes, and the nodes reached for the first time
+        private final int lo, hi;
+
+        Relax(int[] nodes, boolean light, IntList[] improved, IntList[] first, int lo, int hi) {
+            this.nodes = nodes;
+            this.light = light;
+            this.improved = improved;
+            this.first = first;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Relax(nodes, light, improved, first, lo, mid), new Relax(nodes, light, improved, first, mid, hi));
+                return;
+            }
+            IntList out = new IntList(), reached = new IntList();
+            for (int k = lo * GRAIN, last = Math.min(nodes.length, k + GRAIN); k < last; k++) {
+                int u = nodes[k];
+                double du = dist(u);
+                for (int e = g.begin(u), end = g.end(u); e < end; e++) {
+                    double w = g.weightAt(e);
+                    if ((w <= delta) != light) continue;
+                    int v = g.neighborAt(e);
+                    long old = lower(v, du + w);
+                    if (old == -1) continue;
+                    out.add(v);
+                    if (old == INFINITY) reached.add(v);
+                }
+            }
+            improved[lo] = out;
+            first[lo] = reached;
+        }
+    }
+
+    // dist[v] = min(dist[v], d), the bits of the old distance if it was lowered, else -1
+    private long lower(int v, double d) {
+        long bits = Double.doubleToLongBits(d);
+        while (true) {
+            long current = dist.get(v);
+            if (bits >= current) return -1;
+            if (dist.compareAndSet(v, current, bits)) return current;
+        }
+    }
+
+    /**
+     * A growable list of ints.
+     */
+    private static class IntList {
+        private int[] items = new int[8];
+        private int size;
+
+        static IntList of(int i) {
+            IntList l = new IntList();
+            l.add(i);
+            return l;
+        }
+
+        void add(int i) {
+            if (size == items.length) items = Arrays.copyOf(items, 2 * size);
+            items[size++] = i;
+        }
+
+        void addAll(IntList l) {
+            addAll(l.items, l.size);
+        }
+
+        void addAll(int[] a) {
+            addAll(a, a.length);
+        }
+
+        private void addAll(int[] a, int n) {
+            if (size + n > items.length) items = Arrays.copyOf(items, Math.max(size + n, 2 * items.length));
+            System.arraycopy(a, 0, items, size, n);
+            size += n;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(items, size);
+        }
+
+        // the distinct items (by the marks, with a new stamp)
+        int[] distinct(int[] mark, int stamp) {
+            IntList l = new IntList();
+            for (int k = 0; k < size; k++) {
+                if (mark[items[k]] != stamp) {
+                    mark[items[k]] = stamp;
+                    l.add(items[k]);
+                }
+            }
+            return l.toArray();
+        }
+    }
+}
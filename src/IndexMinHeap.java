@@ -0,0 +1,129 @@
+package ex1.src;
+
+/**
+ * This class represents an indexed binary min-heap over the int indexes 0..capacity-1,
+ * ordered by a double priority.
+ * It is used by the shortest path algorithms as the Dijkstra frontier:
+ * every index holds at most one entry, so a better distance is a decreaseKey
+ * (O(log n)) and not a second copy of the node in the queue.
+ */
+class IndexMinHeap {
+    private int[] heap;   // heap position -> index
+    private int[] pos;    // index -> heap position, -1 if not in the heap
+    private double[] keys;
+    private int size;
+
+    public IndexMinHeap(int capacity) {
+        heap = new int[capacity];
+        pos = new int[capacity];
+        keys = new double[capacity];
+        java.util.Arrays.fill(pos, -1);
+        size = 0;
+    }
+    /**
+     * @return the number of indexes currently in the heap.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    /**
+     * @param i - an index
+     * @return true iff i is currently in the heap.
+     */
+    public boolean contains(int i) {
+        return pos[i] != -1;
+    }
+    /**
+     * @param i - an index in the heap
+     * @return the priority of i.
+     */
+    public double key(int i) {
+        return keys[i];
+    }
+    /**
+     * Insert i with the given priority, or lower its priority if it is already in the heap.
+     * Note: a priority that is not lower than the current one is ignored.
+     * @param i - an index
+     * @param key - the priority
+     */
+    public void push(int i, double key) {
+        if (pos[i] == -1) {
+            keys[i] = key;
+            heap[size] = i;
+            pos[i] = size;
+            siftUp(size++);
+        }
+        else if (key < keys[i]) {
+            keys[i] = key;
+            siftUp(pos[i]);
+        }
+    }
+    /**
+     * @return the index with the minimal priority (the heap must not be empty).
+     */
+    public int peek() {
+        return heap[0];
+    }
+    /**
+     * Remove and return the index with the minimal priority (the heap must not be empty).
+     * @return the removed index
+     */
+    public int poll() {
+        int top = heap[0];
+        pos[top] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            pos[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+    /**
+     * Empty the heap, O(size).
+     */
+    public void clear() {
+        for (int k = 0; k < size; k++) pos[heap[k]] = -1;
+        size = 0;
+    }
+
+    private void siftUp(int k) {
+        int i = heap[k];
+        double key = keys[i];
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            int p = heap[parent];
+            if (keys[p] <= key) break;
+            heap[k] = p;
+            pos[p] = k;
+            k = parent;
+        }
+        heap[k] = i;
+        pos[i] = k;
+    }
+
+    private void siftDown(int k) {
+        int i = heap[k];
+        double key = keys[i];
+        int half = size >>> 1;
+        while (k < half) {
+            int child = 2 * k + 1;
+            int c = heap[child];
+            int right = child + 1;
+            if (right < size && keys[heap[right]] < keys[c]) {
+                child = right;
+                c = heap[child];
+            }
+            if (key <= keys[c]) break;
+            heap[k] = c;
+            pos[c] = k;
+            k = child;
+        }
+        heap[k] = i;
+        pos[i] = k;
+    }
+}
@@ -0,0 +1,156 @@
+package ex1.src;
+
+import java.util.Arrays;
+/**
+ * This class represents an open addressing hash map from int keys to double values
+ * (linear probing, no boxing, no entry objects).
+ * It is the adjacency of a node in WGraph_DS: neighbor key -> edge weight.
+ * NaN is not a legal value - it marks an empty slot, and it is what get/put/remove
+ * return when the key is missing.
+ * Deleting shifts the following entries back, so there are no tombstones.
+ * To iterate: for every slot s in 0..slots()-1 with used(s), read keyAt(s) and valueAt(s).
+ */
+class IntDoubleMap implements java.io.Serializable {
+    private static final int MIN_CAPACITY = 4;
+    private int[] keys;
+    private double[] values;
+    private int size;
+
+    public IntDoubleMap() {
+        this(0);
+    }
+    /**
+     * @param expected - the number of entries to allocate room for.
+     */
+    public IntDoubleMap(int expected) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 < expected * 4) capacity <<= 1;
+        keys = new int[capacity];
+        values = new double[capacity];
+        Arrays.fill(values, Double.NaN);
+    }
+    /**
+     * copy constructor
+     * @param other
+     */
+    public IntDoubleMap(IntDoubleMap other) {
+        keys = other.keys.clone();
+        values = other.values.clone();
+        size = other.size;
+    }
+
+    /**
+     * Make room for expected entries, so they are added without resizing.
+     * @param expected - the number of entries
+     */
+    public void ensureCapacity(int expected) {
+        int capacity = keys.length;
+        while (capacity * 3 < expected * 4) capacity <<= 1;
+        if (capacity != keys.length) resize(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean containsKey(int key) {
+        return !Double.isNaN(get(key));
+    }
+    /**
+     * @param key
+     * @return the value of key, NaN if none.
+     */
+    public double get(int key) {
+        int mask = keys.length - 1;
+        for (int s = slot(key, mask); ; s = (s + 1) & mask) {
+            double v = values[s];
+            if (Double.isNaN(v)) return Double.NaN;
+            if (keys[s] == key) return v;
+        }
+    }
+    /**
+     * @param key
+     * @param value - not NaN
+     * @return the previous value of key, NaN if none.
+     */
+    public double put(int key, double value) {
+        int mask = keys.length - 1;
+        int s = slot(key, mask);
+        for (; !Double.isNaN(values[s]); s = (s + 1) & mask) {
+            if (keys[s] == key) {
+                double old = values[s];
+                values[s] = value;
+                return old;
+            }
+        }
+        keys[s] = key;
+        values[s] = value;
+        if (++size * 4 > keys.length * 3) resize(keys.length << 1);
+        return Double.NaN;
+    }
+    /**
+     * @param key
+     * @return the removed value of key, NaN if none.
+     */
+    public double remove(int key) {
+        int mask = keys.length - 1;
+        int s = slot(key, mask);
+        for (; ; s = (s + 1) & mask) {
+            if (Double.isNaN(values[s])) return Double.NaN;
+            if (keys[s] == key) break;
+        }
+        double old = values[s];
+        size--;
+        // shift back the entries of the probe sequence that follows the hole
+        int hole = s;
+        for (s = (s + 1) & mask; !Double.isNaN(values[s]); s = (s + 1) & mask) {
+            int home = slot(keys[s], mask);
+            if (((s - home) & mask) >= ((s - hole) & mask)) {
+                keys[hole] = keys[s];
+                values[hole] = values[s];
+                hole = s;
+            }
+        }
+        values[hole] = Double.NaN;
+        return old;
+    }
+    /**
+     * @return the number of slots (for iteration).
+     */
+    public int slots() {
+        return keys.length;
+    }
+
+    public boolean used(int slot) {
+        return !Double.isNaN(values[slot]);
+    }
+
+    public int keyAt(int slot) {
+        return keys[slot];
+    }
+
+    public double valueAt(int slot) {
+        return values[slot];
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        double[] oldValues = values;
+        keys = new int[capacity];
+        values = new double[capacity];
+        Arrays.fill(values, Double.NaN);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (Double.isNaN(oldValues[i])) continue;
+            int s = slot(oldKeys[i], mask);
+            while (!Double.isNaN(values[s])) s = (s + 1) & mask;
+            keys[s] = oldKeys[i];
+            values[s] = oldValues[i];
+        }
+    }
+
+    private static int slot(int key, int mask) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
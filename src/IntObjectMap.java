@@ -0,0 +1,214 @@
+package ex1.src;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+/**
+ * This class represents an open addressing hash map from int keys to objects
+ * (linear probing, no boxing of the keys, no entry objects).
+ * It is the node map of WGraph_DS: node key -> node.
+ * null is not a legal value - it marks an empty slot, and it is what get/put/remove
+ * return when the key is missing.
+ * Deleting shifts the following entries back, so there are no tombstones.
+ * @param <V> - the type of the values
+ */
+class IntObjectMap<V> implements java.io.Serializable {
+    private static final int MIN_CAPACITY = 4;
+    private int[] keys;
+    private Object[] values;
+    private int size;
+
+    public IntObjectMap() {
+        this(0);
+    }
+    /**
+     * @param expected - the number of entries to allocate room for.
+     */
+    public IntObjectMap(int expected) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 < expected * 4) capacity <<= 1;
+        keys = new int[capacity];
+        values = new Object[capacity];
+    }
+
+    /**
+     * copy constructor - the same slots (no rehashing), every value is copied by the given function.
+     * @param other
+     * @param copy - a copy of a value (not null)
+     */
+    public <W> IntObjectMap(IntObjectMap<W> other, Function<? super W, ? extends V> copy) {
+        keys = other.keys.clone();
+        values = new Object[other.values.length];
+        size = other.size;
+        for (int s = 0; s < values.length; s++) {
+            @SuppressWarnings("unchecked") W v = (W) other.values[s];
+            if (v != null) values[s] = copy.apply(v);
+        }
+    }
+
+    /**
+     * Make room for expected entries, so they are added without resizing.
+     * @param expected - the number of entries
+     */
+    public void ensureCapacity(int expected) {
+        int capacity = keys.length;
+        while (capacity * 3 < expected * 4) capacity <<= 1;
+        if (capacity != keys.length) resize(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+    /**
+     * @param key
+     * @return the value of key, null if none.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int mask = keys.length - 1;
+        for (int s = slot(key, mask); ; s = (s + 1) & mask) {
+            Object v = values[s];
+            if (v == null || keys[s] == key) return (V) v;
+        }
+    }
+    /**
+     * @param key
+     * @param value - not null
+     * @return the previous value of key, null if none.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        int mask = keys.length - 1;
+        int s = slot(key, mask);
+        for (; values[s] != null; s = (s + 1) & mask) {
+            if (keys[s] == key) {
+                Object old = values[s];
+                values[s] = value;
+                return (V) old;
+            }
+        }
+        keys[s] = key;
+        values[s] = value;
+        if (++size * 4 > keys.length * 3) resize(keys.length << 1);
+        return null;
+    }
+    /**
+     * @param key
+     * @return the removed value of key, null if none.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int mask = keys.length - 1;
+        int s = slot(key, mask);
+        for (; ; s = (s + 1) & mask) {
+            if (values[s] == null) return null;
+            if (keys[s] == key) break;
+        }
+        Object old = values[s];
+        size--;
+        // shift back the entries of the probe sequence that follows the hole
+        int hole = s;
+        for (s = (s + 1) & mask; values[s] != null; s = (s + 1) & mask) {
+            int home = slot(keys[s], mask);
+            if (((s - home) & mask) >= ((s - hole) & mask)) {
+                keys[hole] = keys[s];
+                values[hole] = values[s];
+                hole = s;
+            }
+        }
+        values[hole] = null;
+        return (V) old;
+    }
+    /**
+     * This method return a read only Collection view of the values,
+     * contains(o) is a key lookup - O(1).
+     * @return Collection<V>
+     */
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new Iterator<V>() {
+                    private int slot = advance(0);
+
+                    private int advance(int s) {
+                        while (s < values.length && values[s] == null) s++;
+                        return s;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return slot < values.length;
+                    }
+
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public V next() {
+                        if (slot >= values.length) throw new NoSuchElementException();
+                        V v = (V) values[slot];
+                        slot = advance(slot + 1);
+                        return v;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof node_info)) return super.contains(o);
+                V v = get(((node_info) o).getKey());
+                return v != null && v.equals(o);
+            }
+        };
+    }
+
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        IntObjectMap<?> other = (IntObjectMap<?>) o;
+        if (size != other.size) return false;
+        for (int s = 0; s < keys.length; s++) {
+            if (values[s] != null && !values[s].equals(other.get(keys[s]))) return false;
+        }
+        return true;
+    }
+
+    public int hashCode() {
+        int h = 0;
+        for (int s = 0; s < keys.length; s++) {
+            if (values[s] != null) h += keys[s] ^ values[s].hashCode();
+        }
+        return h;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[capacity];
+        values = new Object[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == null) continue;
+            int s = slot(oldKeys[i], mask);
+            while (values[s] != null) s = (s + 1) & mask;
+            keys[s] = oldKeys[i];
+            values[s] = oldValues[i];
+        }
+    }
+
+    private static int slot(int key, int mask) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
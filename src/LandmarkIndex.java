@@ -0,0 +1,165 @@
+package ex1.src;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+/**
+ * This class represents a landmark (ALT) index of a graph: the shortest path distances
+ * from k landmark nodes to every node, precomputed with Dijkstra (one search per landmark,
+ * the searches run in parallel).
+ * By the triangle inequality, for every landmark L:
+ * |d(L,a) - d(L,b)| <= d(a,b) <= d(L,a) + d(L,b),
+ * so the index gives instant lower and upper bounds of a distance, and the lower bound
+ * is an admissible heuristic that guides A* (see WGraph_Algo.buildLandmarks).
+ * The distances are floats, node major (the k distances of a node are together),
+ * 4*k bytes per node, the bounds are widened by the float rounding so they stay valid.
+ * The index belongs to the snapshot it was built on, it is not valid after the graph is changed.
+ */
+public class LandmarkIndex implements heuristic {
+    private final WGraph_CSR graph;
+    private final int[] landmarks; // node indexes
+    private final float[] dist;    // dist[i*k + l] = d(landmark l, node i), infinity if not reachable
+
+    private LandmarkIndex(WGraph_CSR graph, int[] landmarks) {
+        this.graph = graph;
+        this.landmarks = landmarks;
+        int n = graph.nodeSize(), k = landmarks.length;
+        if ((long) n * k > Integer.MAX_VALUE) throw new IllegalArgumentException("too many landmarks for " + n + " nodes");
+        this.dist = new float[n * k];
+        IntStream.range(0, k).parallel().forEach(l -> {
+            ShortestPathTree t = new ShortestPathTree(n);
+            WGraph_Algo.dijkstra(graph, landmarks[l], -1, t);
+            for (int i = 0; i < n; i++) dist[i * k + l] = (float) t.dist[i];
+        });
+    }
+    /**
+     * Build an index with k landmarks that are far from each other: the first is a random node,
+     * and each next one is the node with the most hops (BFS) to its closest landmark,
+     * so every component gets a landmark before any component gets a second one.
+     * O(k(|V|+|E|)) for the selection, and k Dijkstras (in parallel).
+     * @param graph - the snapshot of the graph
+     * @param k - the number of landmarks (at most the number of nodes)
+     * @return the index
+     */
+    public static LandmarkIndex build(WGraph_CSR graph, int k) {
+        int n = graph.nodeSize();
+        k = Math.min(k, n);
+        if (k < 1) throw new IllegalArgumentException("no landmarks");
+        int[] landmarks = new int[k];
+        int[] hops = new int[n];
+        int[] queue = new int[n];
+        Arrays.fill(hops, Integer.MAX_VALUE);
+        int next = new Random(n).nextInt(n);
+        for (int l = 0; l < k; l++) {
+            landmarks[l] = next;
+            int head = 0, tail = 0;
+            queue[tail++] = next;
+            hops[next] = 0;
+            while (head < tail) {
+                int u = queue[head++];
+                for (int e = graph.begin(u), end = graph.end(u); e < end; e++) {
+                    int v = graph.neighborAt(e);
+                    if (hops[u] + 1 < hops[v]) {
+                        hops[v] = hops[u] + 1;
+                        queue[tail++] = v;
+                    }
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                if (hops[i] > hops[next]) next = i;
+            }
+        }
+        return new LandmarkIndex(graph, landmarks);
+    }
+    /**
+     * Build an index with the given landmarks.
+     * @param graph - the snapshot of the graph
+     * @param keys - the keys of the landmark nodes
+     * @return the index
+     */
+    public static LandmarkIndex build(WGraph_CSR graph, int[] keys) {
+        if (keys.length == 0) throw new IllegalArgumentException("no landmarks");
+        int[] landmarks = new int[keys.length];
+        for (int l = 0; l < keys.length; l++) {
+            landmarks[l] = graph.indexOf(keys[l]);
+            if (landmarks[l] < 0) throw new IllegalArgumentException("no node " + keys[l]);
+        }
+        return new LandmarkIndex(graph, landmarks);
+    }
+    /**
+     * @return the snapshot that this index was built on.
+     */
+    public WGraph_CSR getGraph() {
+        return graph;
+    }
+    /**
+     * @return the keys of the landmarks.
+     */
+    public int[] landmarks() {
+        int[] keys = new int[landmarks.length];
+        for (int l = 0; l < keys.length; l++) keys[l] = graph.keyAt(landmarks[l]);
+        return keys;
+    }
+    /**
+     * A lower bound of the distance between two nodes: max over the landmarks of |d(L,a) - d(L,b)|,
+     * infinity if a landmark reaches only one of them (there is no path).
+     * Note: this method should run in O(k) time.
+     * @param node1
+     * @param node2
+     * @return the bound, -1 if there is no such node.
+     */
+    public double lowerBound(int node1, int node2) {
+        int a = graph.indexOf(node1), b = graph.indexOf(node2);
+        if (a < 0 || b < 0) return -1;
+        return lower(a, b);
+    }
+    /**
+     * An upper bound of the distance between two nodes: min over the landmarks of d(L,a) + d(L,b),
+     * infinity if no landmark reaches both.
+     * Note: this method should run in O(k) time.
+     * @param node1
+     * @param node2
+     * @return the bound, -1 if there is no such node.
+     */
+    public double upperBound(int node1, int node2) {
+        int a = graph.indexOf(node1), b = graph.indexOf(node2);
+        if (a < 0 || b < 0) return -1;
+        if (a == b) return 0;
+        int k = landmarks.length;
+        double best = Double.POSITIVE_INFINITY;
+        for (int l = 0; l < k; l++) {
+            float da = dist[a * k + l], db = dist[b * k + l];
+            double up = (double) da + db + Math.ulp(da) + Math.ulp(db);
+            if (up < best) best = up;
+        }
+        return best;
+    }
+    /**
+     * The lower bound as an A* heuristic (0 for a node that is not in the snapshot).
+     * @param node - the key of a node
+     * @param dest - the key of the target node
+     * @return a lower bound of the shortest path distance between node and dest.
+     */
+    @Override
+    public double estimate(int node, int dest) {
+        int a = graph.indexOf(node), b = graph.indexOf(dest);
+        if (a < 0 || b < 0) return 0;
+        return lower(a, b);
+    }
+
+    private double lower(int a, int b) {
+        if (a == b) return 0;
+        int k = landmarks.length;
+        int ra = a * k, rb = b * k;
+        double best = 0;
+        for (int l = 0; l < k; l++) {
+            float da = dist[ra + l], db = dist[rb + l];
+            if (da == db) continue; // also both unreachable
+            if (da == Float.POSITIVE_INFINITY || db == Float.POSITIVE_INFINITY) return Double.POSITIVE_INFINITY;
+            // each float is within half an ulp of the exact distance
+            double low = Math.abs((double) da - db) - Math.ulp(da) - Math.ulp(db);
+            if (low > best) best = low;
+        }
+        return best;
+    }
+}
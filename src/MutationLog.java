@@ -0,0 +1,387 @@
+package ex1.src;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+/**
+ * This class represents a write ahead log of the mutations of a WGraph_DS, for durability
+ * that costs the rate of the changes and not the size of the graph:
+ * the graph appends every mutation that changed it (addNode, connect, removeEdge, removeNode,
+ * connectAll, removeEdges) to the log (see WGraph_DS.setLog), and commit() makes the appended
+ * mutations durable. A full snapshot (checkpoint) is written only once in a while,
+ * and the log before it is dropped. After a crash, recover() loads the last snapshot
+ * and replays the log after it.
+ * The files of a log directory:
+ * snapshot-N.wg - a graph in the binary format of WGraph_IO, the state before log-N,
+ * log-N.wal, log-N+1.wal, ... - the segments of the log, a record per mutation:
+ * length (int), op (byte), the keys and the weights (ints and doubles), crc32 of op and data (int).
+ * Group commit: the mutations are appended to a buffer in memory, the first thread that commits
+ * writes and fsyncs everything that was appended up to then, and the threads that commit
+ * meanwhile wait for it and then write and fsync all their mutations together.
+ * The directory is fsynced after a segment is created and after a snapshot is renamed
+ * (before the older files are deleted), so the files that hold the committed mutations are found after a crash.
+ * A mutation that was not committed may be lost in a crash, a committed one is never lost,
+ * a torn record at the end of the log (a crash during a write) is dropped by recover().
+ */
+public class MutationLog implements Closeable {
+    private static final byte ADD_NODE = 1, CONNECT = 2, REMOVE_EDGE = 3, REMOVE_NODE = 4,
+            CONNECT_ALL = 5, REMOVE_EDGES = 6;
+    private final Path dir;
+    private FileChannel ch;
+    private long segment;
+    // the appended mutations that were not written yet, and the buffer that the committing thread writes
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 16);
+    private ByteBuffer spare = ByteBuffer.allocate(1 << 16);
+    private long appended, durable; // bytes
+    private boolean syncing;
+    private int recordStart; // the position of the record that is being appended
+    private final CRC32 crc = new CRC32();
+
+    private MutationLog(Path dir, long segment) throws IOException {
+        this.dir = dir;
+        this.segment = segment;
+        this.ch = FileChannel.open(logFile(segment), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        try {
+            syncDirectory();
+        }
+        catch (IOException e) {
+            ch.close();
+            throw e;
+        }
+    }
+    /**
+     * Load the graph of a log directory: the last snapshot (an empty graph if there is none)
+     * and the mutations of the log after it. A torn record at the end of the log is cut off.
+     * @param dir - the log directory (created if missing)
+     * @return the graph (without a log, see open)
+     * @throws IOException - if a file can not be read, or a record in the middle of the log is corrupt
+     */
+    public static WGraph_DS recover(String dir) throws IOException {
+        Path d = Paths.get(dir);
+        Files.createDirectories(d);
+        long snapshot = last(d, "snapshot-", ".wg");
+        WGraph_DS g = snapshot < 0 ? new WGraph_DS() : WGraph_IO.load(d.resolve("snapshot-" + snapshot + ".wg").toString());
+        long lastSegment = last(d, "log-", ".wal");
+        for (long s = Math.max(snapshot, 0); s <= lastSegment; s++) {
+            Path file = d.resolve("log-" + s + ".wal");
+            if (Files.exists(file)) replay(file, g, s == lastSegment);
+        }
+        return g;
+    }
+    /**
+     * Open the log of a directory for appending, after recover(dir):
+     * the mutations are appended to a new segment after the existing ones.
+     * @param dir - the log directory
+     * @return the log, to be attached to the recovered graph with WGraph_DS.setLog
+     * @throws IOException
+     */
+    public static MutationLog open(String dir) throws IOException {
+        Path d = Paths.get(dir);
+        Files.createDirectories(d);
+        long next = Math.max(last(d, "log-", ".wal"), last(d, "snapshot-", ".wg")) + 1;
+        return new MutationLog(d, Math.max(next, 0));
+    }
+    /**
+     * Make all the mutations that were appended so far durable (written and fsynced),
+     * together with the mutations of the threads that commit at the same time.
+     * @throws IOException
+     */
+    public void commit() throws IOException {
+        ByteBuffer out;
+        FileChannel c;
+        long end;
+        synchronized (this) {
+            long target = appended;
+            while (true) {
+                if (durable >= target) return;
+                if (!syncing) break;
+                await();
+            }
+            // this thread leads the next group
+            syncing = true;
+            out = pending;
+            pending = spare;
+            spare = null;
+            end = appended;
+            c = ch;
+        }
+        boolean done = false;
+        try {
+            out.flip();
+            while (out.hasRemaining()) c.write(out);
+            c.force(false);
+            done = true;
+        }
+        finally {
+            synchronized (this) {
+                if (done) {
+                    durable = end;
+                    out.clear();
+                }
+                else {
+                    // put back what was not written, in front of what was appended meanwhile
+                    ByteBuffer rest = ByteBuffer.allocate(out.remaining() + pending.position() + (1 << 16));
+                    rest.put(out);
+                    pending.flip();
+                    rest.put(pending);
+                    pending.clear();
+                    out = pending;
+                    pending = rest;
+                }
+                spare = out;
+                syncing = false;
+                notifyAll();
+            }
+        }
+    }
+    /**
+     * Compact the log: write a full snapshot of the graph and drop the log before it.
+     * The appended mutations are committed, the graph is snapshot (copy on write, O(|V|))
+     * and the log moves to a new segment, then the snapshot is written (to a temporary file
+     * that is fsynced and renamed), and the older snapshots and segments are deleted.
+     * Note: the graph must not be changed while this method runs.
+     * @param g - the graph of this log
+     * @throws IOException
+     */
+    public void checkpoint(WGraph_DS g) throws IOException {
+        WGraph_DS version;
+        long s;
+        commit();
+        synchronized (this) {
+            while (syncing) await();
+            if (pending.position() > 0) {
+                pending.flip();
+                while (pending.hasRemaining()) ch.write(pending);
+                pending.clear();
+            }
+            ch.force(false);
+            durable = appended;
+            ch.close();
+            s = ++segment;
+            ch = FileChannel.open(logFile(s), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            syncDirectory();
+            version = g.snapshot();
+        }
+        Path tmp = dir.resolve("snapshot-" + s + ".tmp");
+        WGraph_IO.save(version, tmp.toString());
+        try (FileChannel c = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            c.force(true);
+        }
+        Files.move(tmp, dir.resolve("snapshot-" + s + ".wg"), StandardCopyOption.ATOMIC_MOVE);
+        // the rename must be durable before the files that it replaces are deleted
+        syncDirectory();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                long n = number(file.getFileName().toString());
+                if (n >= 0 && n < s) Files.delete(file);
+            }
+        }
+    }
+    /**
+     * @return the number of bytes that were appended and are not durable yet.
+     */
+    public synchronized long uncommitted() {
+        return appended - durable;
+    }
+    /**
+     * Commit the appended mutations and close the log.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        commit();
+        synchronized (this) {
+            ch.close();
+        }
+    }
+
+    synchronized void addNode(int key) {
+        begin(ADD_NODE, 4).putInt(key);
+        end();
+    }
+
+    synchronized void connect(int node1, int node2, double w) {
+        begin(CONNECT, 16).putInt(node1).putInt(node2).putDouble(w);
+        end();
+    }
+
+    synchronized void removeEdge(int node1, int node2) {
+        begin(REMOVE_EDGE, 8).putInt(node1).putInt(node2);
+        end();
+    }
+
+    synchronized void removeNode(int key) {
+        begin(REMOVE_NODE, 4).putInt(key);
+        end();
+    }
+
+    synchronized void connectAll(int[] src, int[] dst, double[] w) {
+        ByteBuffer b = begin(CONNECT_ALL, 4 + 16L * src.length).putInt(src.length);
+        for (int e = 0; e < src.length; e++) b.putInt(src[e]).putInt(dst[e]).putDouble(w[e]);
+        end();
+    }
+
+    synchronized void removeEdges(int[] node1, int[] node2) {
+        ByteBuffer b = begin(REMOVE_EDGES, 4 + 8L * node1.length).putInt(node1.length);
+        for (int e = 0; e < node1.length; e++) b.putInt(node1[e]).putInt(node2[e]);
+        end();
+    }
+
+    // start a record of op with data bytes in the pending buffer, the caller puts the data and calls end()
+    private ByteBuffer begin(byte op, long data) {
+        if (data > Integer.MAX_VALUE - 16) throw new IllegalArgumentException("the mutation is too large to log");
+        int length = 1 + (int) data;
+        if (pending.remaining() < length + 8) {
+            ByteBuffer b = ByteBuffer.allocate(Math.max(2 * pending.capacity(), pending.position() + length + 8));
+            pending.flip();
+            b.put(pending);
+            pending = b;
+        }
+        recordStart = pending.position();
+        return pending.putInt(length).put(op);
+    }
+
+    private void end() {
+        int length = pending.position() - recordStart - 4;
+        crc.reset();
+        crc.update(pending.array(), recordStart + 4, length);
+        pending.putInt((int) crc.getValue());
+        appended += length + 8;
+    }
+
+    private void await() throws InterruptedIOException {
+        try {
+            wait();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    // fsync the directory, so the entries of the files that were created or renamed in it survive a crash
+    private void syncDirectory() throws IOException {
+        try (FileChannel d = FileChannel.open(dir, StandardOpenOption.READ)) {
+            d.force(true);
+        }
+    }
+
+    private Path logFile(long s) {
+        return dir.resolve("log-" + s + ".wal");
+    }
+
+    // apply the records of a segment, a torn record at the end of the last segment is cut off
+    private static void replay(Path file, WGraph_DS g, boolean last) throws IOException {
+        long valid = 0;
+        try (FileChannel c = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = c.size();
+            if (size > Integer.MAX_VALUE) throw new IOException(file + " is too large");
+            MappedByteBuffer b = c.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32 crc = new CRC32();
+            byte[] record = new byte[64];
+            while (b.remaining() >= 4) {
+                int length = b.getInt();
+                if (length < 1 || length > b.remaining() - 4) break;
+                if (record.length < length) record = new byte[Math.max(length, 2 * record.length)];
+                b.get(record, 0, length);
+                crc.reset();
+                crc.update(record, 0, length);
+                if ((int) crc.getValue() != b.getInt()) break;
+                apply(ByteBuffer.wrap(record, 0, length), g);
+                valid = b.position();
+            }
+            if (valid < size) {
+                if (!last) throw new IOException(file + " is corrupt at " + valid);
+                c.truncate(valid);
+                c.force(true);
+            }
+        }
+    }
+
+    private static void apply(ByteBuffer r, WGraph_DS g) throws IOException {
+        byte op = r.get();
+        switch (op) {
+            case ADD_NODE:
+                g.addNode(r.getInt());
+                break;
+            case CONNECT:
+                g.connect(r.getInt(), r.getInt(), r.getDouble());
+                break;
+            case REMOVE_EDGE:
+                g.removeEdge(r.getInt(), r.getInt());
+                break;
+            case REMOVE_NODE:
+                g.removeNode(r.getInt());
+                break;
+            case CONNECT_ALL: {
+                int n = r.getInt();
+                int[] src = new int[n], dst = new int[n];
+                double[] w = new double[n];
+                for (int e = 0; e < n; e++) {
+                    src[e] = r.getInt();
+                    dst[e] = r.getInt();
+                    w[e] = r.getDouble();
+                }
+                g.connectAll(src, dst, w);
+                break;
+            }
+            case REMOVE_EDGES: {
+                int n = r.getInt();
+                int[] node1 = new int[n], node2 = new int[n];
+                for (int e = 0; e < n; e++) {
+                    node1[e] = r.getInt();
+                    node2[e] = r.getInt();
+                }
+                g.removeEdges(node1, node2);
+                break;
+            }
+            default:
+                throw new IOException("unknown log record " + op);
+        }
+    }
+
+    // the largest N of the files prefix-N-suffix in the directory, -1 if none
+    private static long last(Path dir, String prefix, String suffix) throws IOException {
+        long last = -1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    last = Math.max(last, Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                }
+                catch (NumberFormatException e) {
+                    // not a file of the log
+                }
+            }
+        }
+        return last;
+    }
+
+    // N of a file snapshot-N.wg, snapshot-N.tmp or log-N.wal, -1 for any other file
+    private static long number(String name) {
+        int dash = name.indexOf('-'), dot = name.lastIndexOf('.');
+        if (dash < 0 || dot < dash) return -1;
+        String prefix = name.substring(0, dash + 1), suffix = name.substring(dot);
+        boolean ours = (prefix.equals("snapshot-") && (suffix.equals(".wg") || suffix.equals(".tmp")))
+                || (prefix.equals("log-") && suffix.equals(".wal"));
+        if (!ours) return -1;
+        try {
+            return Long.parseLong(name.substring(dash + 1, dot));
+        }
+        catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
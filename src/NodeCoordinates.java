@@ -0,0 +1,191 @@
+package ex1.src;
+
+import java.util.Arrays;
+/**
+ * This class represents the coordinates (x, y) of the nodes of a graph,
+ * an open addressing hash map from the node key to two doubles (no boxing, no entry objects),
+ * see WGraph_DS.setCoordinates(NodeCoordinates).
+ * The nodes without coordinates have NaN coordinates.
+ * It gives the heuristics of the A* searches:
+ * euclidean() - the straight line distance, for planar coordinates,
+ * haversine() - the great circle distance in meters, for x = longitude and y = latitude in degrees.
+ * A heuristic is admissible only if every edge weight is at least its scaled length,
+ * so for weights that are not lengths (e.g. travel times) use a scale (e.g. 1 / the max speed).
+ */
+public class NodeCoordinates implements java.io.Serializable {
+    private static final int MIN_CAPACITY = 4;
+    /** The mean radius of the earth in meters. */
+    public static final double EARTH_RADIUS = 6371008.8;
+    private int[] keys;
+    private double[] xs; // NaN marks an empty slot
+    private double[] ys;
+    private int size;
+
+    public NodeCoordinates() {
+        this(0);
+    }
+    /**
+     * @param expected - the number of nodes to allocate room for.
+     */
+    public NodeCoordinates(int expected) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 < expected * 4) capacity <<= 1;
+        keys = new int[capacity];
+        xs = new double[capacity];
+        ys = new double[capacity];
+        Arrays.fill(xs, Double.NaN);
+    }
+    /**
+     * copy constructor
+     * @param other
+     */
+    public NodeCoordinates(NodeCoordinates other) {
+        keys = other.keys.clone();
+        xs = other.xs.clone();
+        ys = other.ys.clone();
+        size = other.size;
+    }
+    /**
+     * @return the number of nodes with coordinates.
+     */
+    public int size() {
+        return size;
+    }
+    /**
+     * @param key - a node key
+     * @return true iff the node has coordinates.
+     */
+    public boolean contains(int key) {
+        return find(key) >= 0;
+    }
+    /**
+     * Set (or change) the coordinates of the node.
+     * @param key - a node key
+     * @param x - not NaN
+     * @param y - not NaN
+     */
+    public void set(int key, double x, double y) {
+        if (Double.isNaN(x) || Double.isNaN(y)) throw new IllegalArgumentException("NaN coordinate of node " + key);
+        int mask = keys.length - 1;
+        int s = slot(key, mask);
+        for (; !Double.isNaN(xs[s]); s = (s + 1) & mask) {
+            if (keys[s] == key) break;
+        }
+        if (Double.isNaN(xs[s])) {
+            keys[s] = key;
+            size++;
+        }
+        xs[s] = x;
+        ys[s] = y;
+        if (size * 4 > keys.length * 3) resize(keys.length << 1);
+    }
+    /**
+     * @param key - a node key
+     * @return the x coordinate of the node, NaN if none.
+     */
+    public double x(int key) {
+        int s = find(key);
+        return s < 0 ? Double.NaN : xs[s];
+    }
+    /**
+     * @param key - a node key
+     * @return the y coordinate of the node, NaN if none.
+     */
+    public double y(int key) {
+        int s = find(key);
+        return s < 0 ? Double.NaN : ys[s];
+    }
+    /**
+     * Remove the coordinates of the node.
+     * @param key - a node key
+     */
+    public void remove(int key) {
+        int s = find(key);
+        if (s < 0) return;
+        int mask = keys.length - 1;
+        size--;
+        // shift back the entries of the probe sequence that follows the hole
+        int hole = s;
+        for (s = (s + 1) & mask; !Double.isNaN(xs[s]); s = (s + 1) & mask) {
+            int home = slot(keys[s], mask);
+            if (((s - home) & mask) >= ((s - hole) & mask)) {
+                keys[hole] = keys[s];
+                xs[hole] = xs[s];
+                ys[hole] = ys[s];
+                hole = s;
+            }
+        }
+        xs[hole] = Double.NaN;
+    }
+    /**
+     * @return the straight line distance heuristic.
+     */
+    public heuristic euclidean() {
+        return euclidean(1);
+    }
+    /**
+     * @param scale - the minimal weight of an edge per unit of length
+     * @return the straight line distance heuristic, times scale
+     * (0 for a node without coordinates).
+     */
+    public heuristic euclidean(double scale) {
+        return (node, dest) -> {
+            int a = find(node), b = find(dest);
+            if (a < 0 || b < 0) return 0;
+            return scale * Math.hypot(xs[a] - xs[b], ys[a] - ys[b]);
+        };
+    }
+    /**
+     * @return the great circle distance heuristic in meters (x = longitude, y = latitude in degrees).
+     */
+    public heuristic haversine() {
+        return haversine(1);
+    }
+    /**
+     * @param scale - the minimal weight of an edge per meter
+     * @return the great circle distance heuristic in meters, times scale
+     * (x = longitude, y = latitude in degrees, 0 for a node without coordinates).
+     */
+    public heuristic haversine(double scale) {
+        return (node, dest) -> {
+            int a = find(node), b = find(dest);
+            if (a < 0 || b < 0) return 0;
+            double lat1 = Math.toRadians(ys[a]), lat2 = Math.toRadians(ys[b]);
+            double sinLat = Math.sin((lat2 - lat1) / 2);
+            double sinLon = Math.sin(Math.toRadians(xs[b] - xs[a]) / 2);
+            double h = sinLat * sinLat + Math.cos(lat1) * Math.cos(lat2) * sinLon * sinLon;
+            return scale * 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(h)));
+        };
+    }
+
+    private int find(int key) {
+        int mask = keys.length - 1;
+        for (int s = slot(key, mask); ; s = (s + 1) & mask) {
+            if (Double.isNaN(xs[s])) return -1;
+            if (keys[s] == key) return s;
+        }
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        double[] oldXs = xs, oldYs = ys;
+        keys = new int[capacity];
+        xs = new double[capacity];
+        ys = new double[capacity];
+        Arrays.fill(xs, Double.NaN);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (Double.isNaN(oldXs[i])) continue;
+            int s = slot(oldKeys[i], mask);
+            while (!Double.isNaN(xs[s])) s = (s + 1) & mask;
+            keys[s] = oldKeys[i];
+            xs[s] = oldXs[i];
+            ys[s] = oldYs[i];
+        }
+    }
+
+    private static int slot(int key, int mask) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,246 @@
+package ex1.src;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+/**
+ * This class represents a bounded LRU cache of the shortest path results of a WGraph_Algo,
+ * see WGraph_Algo.enableQueryCache(maxBytes): the distance and the path of every (src, dest)
+ * pair that was asked, and the full trees of shortestPathTree(src).
+ * The graph is undirected, so a pair is kept once for both directions, and a cached tree
+ * of src (or of dest) answers every pair of its source without an entry of its own.
+ * The results belong to a snapshot of the graph, the snapshot is rebuilt when the graph MC
+ * changes, so the first lookup on a new snapshot drops all the results (an invalidation).
+ * The memory of the results is estimated (the arrays and about 90 bytes per entry),
+ * the least recently used ones are evicted to keep it under the budget.
+ * All the methods are synchronized, the searches themselves run outside of the cache.
+ */
+public class QueryCache {
+    static final int[] NO_PATH = new int[0];
+    private static final long ENTRY_BYTES = 88;   // map entry, Long key and the result object
+    private static final long ARRAY_BYTES = 16;   // array header
+    private final long maxBytes;
+    // (a,b) -> Pair with a < b, (s,s) -> Tree of source s (a pair is never a node with itself)
+    private final LinkedHashMap<Long, Object> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private WGraph_CSR graph;
+    private long bytes;
+    private long hits, misses, evictions, invalidations;
+
+    /**
+     * @param maxBytes - the memory budget of the cached results
+     */
+    QueryCache(long maxBytes) {
+        if (maxBytes <= 0) throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+        this.maxBytes = maxBytes;
+    }
+    /**
+     * @return the memory budget of the cached results.
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+    /**
+     * @return the estimated memory of the cached results.
+     */
+    public synchronized long bytes() {
+        return bytes;
+    }
+    /**
+     * @return the number of cached results (pairs and trees).
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+    /**
+     * @return the number of queries that were answered by the cache.
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+    /**
+     * @return the number of queries that were not answered by the cache.
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+    /**
+     * @return the number of results that were evicted to keep the memory budget.
+     */
+    public synchronized long evictions() {
+        return evictions;
+    }
+    /**
+     * @return the number of times that the results were dropped because the graph was changed.
+     */
+    public synchronized long invalidations() {
+        return invalidations;
+    }
+    /**
+     * Drop all the cached results (the counters are kept).
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * @return the cached distance between the node indexes s and d of the snapshot g,
+     * infinity if there is no path, NaN if it is not cached.
+     */
+    synchronized double distance(WGraph_CSR g, int s, int d) {
+        of(g);
+        Pair p = (Pair) entries.get(pairKey(s, d));
+        if (p != null) {
+            hits++;
+            return p.dist;
+        }
+        Tree t = tree(s, d);
+        if (t != null) {
+            hits++;
+            return t.dist[t.source == s ? d : s];
+        }
+        misses++;
+        return Double.NaN;
+    }
+    /**
+     * @return the cached path from s to d (node indexes of the snapshot g, s first),
+     * NO_PATH if there is no path, null if it is not cached.
+     */
+    synchronized int[] path(WGraph_CSR g, int s, int d) {
+        of(g);
+        Pair p = (Pair) entries.get(pairKey(s, d));
+        if (p != null && p.dist == Double.POSITIVE_INFINITY) {
+            hits++;
+            return NO_PATH;
+        }
+        if (p != null && p.path != null) {
+            hits++;
+            return s < d ? p.path.clone() : reverse(p.path);
+        }
+        Tree t = tree(s, d);
+        if (t != null) {
+            hits++;
+            // the predecessors lead to the source, from d to s of a tree of s (and s to d of a tree of d)
+            int from = t.source == s ? d : s;
+            if (t.dist[from] == Double.POSITIVE_INFINITY) return NO_PATH;
+            int length = 0;
+            for (int i = from; i != -1; i = t.prev[i]) length++;
+            int[] path = new int[length];
+            int k = 0;
+            for (int i = from; i != -1; i = t.prev[i]) path[k++] = i;
+            return t.source == s ? reverse(path) : path;
+        }
+        misses++;
+        return null;
+    }
+    /**
+     * Cache the distance between s and d (infinity if there is no path).
+     */
+    synchronized void putDistance(WGraph_CSR g, int s, int d, double dist) {
+        of(g);
+        Long key = pairKey(s, d);
+        if (entries.get(key) == null) put(key, new Pair(dist, null), ENTRY_BYTES);
+    }
+    /**
+     * Cache the path from s to d (null if there is no path) and its length.
+     */
+    synchronized void putPath(WGraph_CSR g, int s, int d, double dist, int[] path) {
+        of(g);
+        if (path != null && s > d) path = reverse(path);
+        long size = path == null ? ENTRY_BYTES : ENTRY_BYTES + ARRAY_BYTES + 4L * path.length;
+        put(pairKey(s, d), new Pair(dist, path), size);
+    }
+    /**
+     * Copy the cached full tree of the source s into the given tree.
+     * @return true iff it was cached.
+     */
+    synchronized boolean copyTree(WGraph_CSR g, int s, ShortestPathTree into) {
+        of(g);
+        Tree t = (Tree) entries.get(treeKey(s));
+        if (t == null) {
+            misses++;
+            return false;
+        }
+        hits++;
+        into.copyOf(t.dist, t.prev);
+        return true;
+    }
+    /**
+     * Cache the full tree of the source s (copies of the arrays).
+     */
+    synchronized void putTree(WGraph_CSR g, int s, double[] dist, int[] prev) {
+        of(g);
+        long size = ENTRY_BYTES + 2 * ARRAY_BYTES + 12L * dist.length;
+        put(treeKey(s), new Tree(s, dist.clone(), prev.clone()), size);
+    }
+
+    // the results are of the snapshot g from now on
+    private void of(WGraph_CSR g) {
+        if (graph == g) return;
+        if (graph != null && !entries.isEmpty()) invalidations++;
+        graph = g;
+        clear();
+    }
+
+    private void put(Long key, Object value, long size) {
+        if (size > maxBytes) return;
+        Object old = entries.put(key, value);
+        if (old != null) bytes -= sizeOf(old);
+        bytes += size;
+        Iterator<Map.Entry<Long, Object>> it = entries.entrySet().iterator();
+        while (bytes > maxBytes) {
+            Object eldest = it.next().getValue();
+            bytes -= sizeOf(eldest);
+            it.remove();
+            evictions++;
+        }
+    }
+
+    // a cached tree of s or of d
+    private Tree tree(int s, int d) {
+        Tree t = (Tree) entries.get(treeKey(s));
+        return t != null ? t : (Tree) entries.get(treeKey(d));
+    }
+
+    private static long sizeOf(Object value) {
+        if (value instanceof Tree) return ENTRY_BYTES + 2 * ARRAY_BYTES + 12L * ((Tree) value).dist.length;
+        int[] path = ((Pair) value).path;
+        return path == null ? ENTRY_BYTES : ENTRY_BYTES + ARRAY_BYTES + 4L * path.length;
+    }
+
+    private static Long pairKey(int s, int d) {
+        return s < d ? (long) s << 32 | d : (long) d << 32 | s;
+    }
+
+    private static Long treeKey(int s) {
+        return (long) s << 32 | s;
+    }
+
+    private static int[] reverse(int[] a) {
+        int[] r = new int[a.length];
+        for (int k = 0; k < a.length; k++) r[k] = a[a.length - 1 - k];
+        return r;
+    }
+
+    private static class Pair {
+        private final double dist;
+        private final int[] path; // node indexes from the smaller index to the larger, null if not known
+
+        Pair(double dist, int[] path) {
+            this.dist = dist;
+            this.path = path;
+        }
+    }
+
+    private static class Tree {
+        private final int source;
+        private final double[] dist;
+        private final int[] prev;
+
+        Tree(int source, double[] dist, int[] prev) {
+            this.source = source;
+            this.dist = dist;
+            this.prev = prev;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package ex1.src;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedList;
+import java.util.List;
+/**
+ * This class represents the state of a single source shortest path search,
+ * kept outside of the graph: dense arrays indexed by the node index of a WGraph_CSR snapshot.
+ * dist[i] - the distance from the source to node i (infinity if not reached),
+ * prev[i] - the index of the node before i on the shortest path (-1 if none),
+ * settled - the nodes whose distance is final.
+ * Every search owns its own tree, so searches on the same graph never interfere.
+ * The reached nodes are listed, so reset() costs the size of the last search and not O(n) -
+ * a point to point search that explores a small part of a large graph can reuse its tree.
+ * A full tree (see WGraph_Algo.shortestPathTree(src)) answers the distance and the path
+ * from its source to every node: distTo is O(1) and pathTo is O(path length).
+ */
+public class ShortestPathTree {
+    final double[] dist;
+    final int[] prev;
+    final BitSet settled;
+    final IndexMinHeap heap;
+    private final int[] reached;
+    private int numOfReached;
+    // the graph of a full tree (see WGraph_Algo.shortestPathTree), null for a search tree
+    private WGraph_CSR graph;
+    private weighted_graph nodes;
+    private int source = -1;
+
+    ShortestPathTree(int n) {
+        dist = new double[n];
+        prev = new int[n];
+        settled = new BitSet(n);
+        heap = new IndexMinHeap(n);
+        reached = new int[n];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        Arrays.fill(prev, -1);
+    }
+    /**
+     * @return the number of nodes of the graph (the size of the arrays).
+     */
+    public int capacity() {
+        return dist.length;
+    }
+    /**
+     * @return the key of the source node.
+     */
+    public int getSource() {
+        return graph.keyAt(source);
+    }
+    /**
+     * Note: this method should run in O(1) time.
+     * @param key - a node key
+     * @return the length of the shortest path from the source to the node, -1 if there is no path.
+     */
+    public double distTo(int key) {
+        int i = graph.indexOf(key);
+        if (i < 0 || dist[i] == Double.POSITIVE_INFINITY) return -1;
+        return dist[i];
+    }
+    /**
+     * @param key - a node key
+     * @return true iff there is a path from the source to the node.
+     */
+    public boolean hasPathTo(int key) {
+        int i = graph.indexOf(key);
+        return i >= 0 && dist[i] != Double.POSITIVE_INFINITY;
+    }
+    /**
+     * returns the the shortest path from the source to the node - as an ordered List of nodes:
+     * src--> n1-->n2-->...key, O(path length).
+     * Note if no such path --> returns null;
+     * @param key - a node key
+     * @return
+     */
+    public List<node_info> pathTo(int key) {
+        int i = graph.indexOf(key);
+        if (i < 0 || dist[i] == Double.POSITIVE_INFINITY) return null;
+        LinkedList<node_info> path = new LinkedList<>();
+        for (; i != -1; i = prev[i]) path.addFirst(nodes.getNode(graph.keyAt(i)));
+        return path;
+    }
+    /**
+     * The distances by node index (see keyAt), infinity for the nodes that were not reached.
+     * Note: this is the array of the tree (not a copy), it is changed when the tree is reused.
+     * @return double[capacity()]
+     */
+    public double[] distances() {
+        return dist;
+    }
+    /**
+     * The index of the node before every node on its shortest path (-1 for the source
+     * and for the nodes that were not reached), by node index (see keyAt).
+     * Note: this is the array of the tree (not a copy), it is changed when the tree is reused.
+     * @return int[capacity()]
+     */
+    public int[] predecessors() {
+        return prev;
+    }
+    /**
+     * @param i - a node index (0..capacity()-1)
+     * @return the key of the node.
+     */
+    public int keyAt(int i) {
+        return graph.keyAt(i);
+    }
+    /**
+     * @param key - a node key
+     * @return the index of the node, a negative number if none.
+     */
+    public int indexOf(int key) {
+        return graph.indexOf(key);
+    }
+    /**
+     * Set the graph and the source of a full tree.
+     */
+    void of(WGraph_CSR graph, weighted_graph nodes, int source) {
+        this.graph = graph;
+        this.nodes = nodes;
+        this.source = source;
+    }
+    /**
+     * Set a better distance of node i, through the node p.
+     * @param i - a node index
+     * @param d - the new distance
+     * @param p - the index of the node before i (-1 for the source)
+     */
+    void reach(int i, double d, int p) {
+        if (dist[i] == Double.POSITIVE_INFINITY) reached[numOfReached++] = i;
+        dist[i] = d;
+        prev[i] = p;
+    }
+    /**
+     * Set the distances and the predecessors of a full tree (all its reached nodes are settled), O(n).
+     * @param dist - the distances by node index, infinity for the nodes that were not reached
+     * @param prev - the predecessors by node index
+     */
+    void copyOf(double[] dist, int[] prev) {
+        reset();
+        for (int i = 0; i < dist.length; i++) {
+            if (dist[i] == Double.POSITIVE_INFINITY) continue;
+            reach(i, dist[i], prev[i]);
+            settled.set(i);
+        }
+    }
+    /**
+     * Forget the last search, O(number of reached nodes).
+     */
+    void reset() {
+        for (int k = 0; k < numOfReached; k++) {
+            int i = reached[k];
+            dist[i] = Double.POSITIVE_INFINITY;
+            prev[i] = -1;
+            settled.clear(i);
+        }
+        numOfReached = 0;
+        heap.clear();
+    }
+}
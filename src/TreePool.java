@@ -0,0 +1,65 @@
+package ex1.src;
+
+import java.util.ArrayDeque;
+/**
+ * This class represents a small shared pool of pairs of search trees (see ShortestPathTree)
+ * of one snapshot size, for the point to point queries of WGraph_Algo and ContractionHierarchy:
+ * a query takes a pair, searches, and gives it back, so the next query does not allocate
+ * its n sized arrays again. The pool keeps at most SIZE pairs and drops them when it is asked
+ * for trees of another size, so the trees never outlive the queries (and the threads that
+ * ran them) by more than that. The pool itself is not serialized, only its (empty) place.
+ */
+final class TreePool implements java.io.Serializable {
+    static final int SIZE = Math.max(2, Runtime.getRuntime().availableProcessors());
+    // the pairs that no query uses, null if none
+    private transient ArrayDeque<ShortestPathTree[]> free;
+
+    /**
+     * Take two search trees for a snapshot of n nodes, reset, from the pool (or new ones).
+     * A search resets only what it reached, so a query that explores a small part of
+     * a large graph does not pay O(n) for its arrays.
+     * @param n - the number of nodes of the snapshot
+     * @return ShortestPathTree[2]
+     */
+    ShortestPathTree[] take(int n) {
+        ShortestPathTree[] t = null;
+        synchronized (this) {
+            if (free != null) {
+                t = free.poll();
+                if (t != null && t[0].capacity() != n) {
+                    free = null;
+                    t = null;
+                }
+            }
+        }
+        if (t == null) return new ShortestPathTree[]{new ShortestPathTree(n), new ShortestPathTree(n)};
+        t[0].reset();
+        t[1].reset();
+        return t;
+    }
+    /**
+     * Return the trees of a query to the pool, unless the pool is full
+     * or the snapshot is no longer of their size.
+     * @param t - the trees from take(n)
+     * @param n - the number of nodes of the current snapshot
+     */
+    synchronized void giveBack(ShortestPathTree[] t, int n) {
+        if (t[0].capacity() != n) return;
+        if (free == null) free = new ArrayDeque<>();
+        if (free.size() < SIZE) free.push(t);
+    }
+    /**
+     * Drop the pooled trees if they are not of size n (the snapshot was rebuilt with another size).
+     * @param n - the number of nodes of the current snapshot
+     */
+    synchronized void retain(int n) {
+        ShortestPathTree[] t = free == null ? null : free.peek();
+        if (t != null && t[0].capacity() != n) free = null;
+    }
+    /**
+     * Drop all the pooled trees, the next queries allocate new ones.
+     */
+    synchronized void clear() {
+        free = null;
+    }
+}
@@ -0,0 +1,64 @@
+package ex1.src;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+/**
+ * This class represents a graph that writer threads change while reader threads
+ * (e.g. long WGraph_Algo queries) read consistent versions of it (MVCC):
+ * the writers change a WGraph_DS through update(...), one at a time,
+ * and a reader takes the current version with read() - an immutable snapshot of the graph
+ * (see WGraph_DS.snapshot) whose getMC() is its version number.
+ * Every update that changes the graph publishes a new version when it ends, so read() is
+ * a single volatile read: a reader never waits for a writer and never holds the writers back,
+ * while a writer is in the middle of an update the readers get the last version.
+ * The snapshots share the adjacency of the nodes with the graph (copy on write), so a version
+ * costs the writer O(|V|) and a later change copies only the adjacency of the nodes that it
+ * changes - group many small changes into one update (e.g. connectAll).
+ * A reader keeps its version for as long as it needs it and never sees a torn state.
+ */
+public class VersionedGraph {
+    private final WGraph_DS graph;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile WGraph_DS current; // the last version, published by the writers
+
+    /**
+     * @param graph - the graph, from now on it should be changed only by update(...)
+     */
+    public VersionedGraph(WGraph_DS graph) {
+        if (graph.isReadOnly()) throw new IllegalArgumentException("the graph is a read only snapshot");
+        this.graph = graph;
+        this.current = graph.snapshot();
+    }
+    /**
+     * Change the graph, after the updates of the other writers and before the next ones,
+     * and publish the new version if the graph was changed.
+     * The readers see all the change or none of it.
+     * Note: this method should run in O(|V|) time plus the time of the mutation.
+     * @param mutation - the change (e.g. g -> g.connectAll(src, dst, w))
+     */
+    public void update(Consumer<? super WGraph_DS> mutation) {
+        lock.lock();
+        try {
+            mutation.accept(graph);
+            if (graph.getMC() != current.getMC()) current = graph.snapshot();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+    /**
+     * Return the current version of the graph: the snapshot of the last update that ended
+     * (the same one until the next update changes the graph), without waiting for the writers.
+     * Note: this method should run in O(1) time.
+     * @return an immutable snapshot, getMC() is its version
+     */
+    public WGraph_DS read() {
+        return current;
+    }
+    /**
+     * @return the version of the graph (its MC), after the last update that ended.
+     */
+    public int getVersion() {
+        return current.getMC();
+    }
+}
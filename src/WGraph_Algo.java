@@ -2,6 +2,9 @@ package ex1.src;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntUnaryOperator;
 /**
  * This interface represents an Undirected (positive) Weighted Graph Theory algorithms including:
  * 0. clone(); (copy)
@@ -16,7 +19,32 @@ import java.util.*;
  *
  */
 public class WGraph_Algo implements weighted_graph_algorithms,java.io.Serializable {
+    /**
+     * The search that shortestPathDist and shortestPath run, both give the same results:
+     * DIJKSTRA - from src until dest is settled,
+     * BIDIRECTIONAL - from src and from dest at the same time until the two searches meet,
+     * for point to point queries on large graphs,
+     * DELTA_STEPPING - a parallel search (see DeltaStepping) on the common ForkJoinPool,
+     * for very large graphs on many cores.
+     */
+    public enum Search { DIJKSTRA, BIDIRECTIONAL, DELTA_STEPPING }
+
     private weighted_graph myWeightedGraphAlgo;
+    private Search search = Search.DIJKSTRA;
+    // the bucket width of DELTA_STEPPING, 0 for the default of the graph
+    private volatile double delta;
+    // the DELTA_STEPPING engine of the last query and the delta setting it was built for,
+    // reused on the same snapshot (taken by one query at a time)
+    private transient DeltaStepping engine;
+    private transient double engineDelta;
+    // CSR snapshot of the graph that the searches run on, rebuilt when the graph MC changes
+    private transient volatile WGraph_CSR snapshot;
+    // the search trees that no query uses, reused by the next queries on a snapshot of the same size
+    private final TreePool pool = new TreePool();
+    // the landmark index that guides shortestPathDist/shortestPath while the graph is not changed (null if none)
+    private transient volatile LandmarkIndex landmarks;
+    // the results of shortestPathDist/shortestPath/shortestPathTree (null if not enabled)
+    private transient volatile QueryCache cache;
 
     public WGraph_Algo() {
         myWeightedGraphAlgo = new WGraph_DS();
@@ -33,6 +61,8 @@ public class WGraph_Algo implements weighted_graph_algorithms,java.io.Serializab
     public void init(weighted_graph g) {
         if (g==null) myWeightedGraphAlgo =new WGraph_DS();
         this.myWeightedGraphAlgo = g;
+        this.snapshot = null;
+        this.landmarks = null;
     }
     /**
      * Return the underlying graph of which this class works.
@@ -42,40 +72,175 @@ public class WGraph_Algo implements weighted_graph_algorithms,java.io.Serializab
     public weighted_graph getGraph() {
         return myWeightedGraphAlgo;
     }
+    /**
+     * Set the search of shortestPathDist and shortestPath (Search.DIJKSTRA by default).
+     * @param search
+     */
+    public void setSearch(Search search) {
+        this.search = Objects.requireNonNull(search);
+    }
+    /**
+     * @return the search of shortestPathDist and shortestPath.
+     */
+    public Search getSearch() {
+        return search;
+    }
+    /**
+     * Set the bucket width of Search.DELTA_STEPPING.
+     * @param delta - the width (> 0), or 0 for the default (the mean edge weight of the graph)
+     */
+    public void setDelta(double delta) {
+        if (!(delta >= 0) || delta == Double.POSITIVE_INFINITY) throw new IllegalArgumentException("bad delta " + delta);
+        this.delta = delta;
+    }
+    /**
+     * @return the bucket width of Search.DELTA_STEPPING, 0 for the default.
+     */
+    public double getDelta() {
+        return delta;
+    }
+    /**
+     * Build a landmark (ALT) index of the graph with k landmarks, see LandmarkIndex.
+     * Until the graph is changed, shortestPathDist and shortestPath (Search.DIJKSTRA)
+     * run A* searches that are guided by it, after a change they are plain searches again
+     * until the index is rebuilt.
+     * @param k - the number of landmarks
+     * @return the index, for its lower/upper distance bounds
+     */
+    public LandmarkIndex buildLandmarks(int k) {
+        LandmarkIndex index = LandmarkIndex.build(snapshot(), k);
+        landmarks = index;
+        return index;
+    }
+    /**
+     * Build a landmark (ALT) index of the graph with the given landmarks, see buildLandmarks(int).
+     * @param keys - the keys of the landmark nodes
+     * @return the index
+     */
+    public LandmarkIndex buildLandmarks(int[] keys) {
+        LandmarkIndex index = LandmarkIndex.build(snapshot(), keys);
+        landmarks = index;
+        return index;
+    }
+    /**
+     * Drop the landmark index.
+     */
+    public void dropLandmarks() {
+        landmarks = null;
+    }
+    /**
+     * Cache the results of shortestPathDist, shortestPath and shortestPathTree, see QueryCache:
+     * a repeated (src, dest) pair, or a pair of a source whose tree was computed, is answered
+     * without a search. The cached results are dropped when the graph is changed (by its MC),
+     * and the least recently used ones are evicted to keep their memory under maxBytes.
+     * The cache is not serialized.
+     * @param maxBytes - the memory budget of the cached results
+     * @return the cache, for its hit/miss/eviction counters
+     */
+    public QueryCache enableQueryCache(long maxBytes) {
+        QueryCache c = new QueryCache(maxBytes);
+        cache = c;
+        return c;
+    }
+    /**
+     * Drop the query cache.
+     */
+    public void disableQueryCache() {
+        cache = null;
+    }
+    /**
+     * @return the query cache, null if it is not enabled.
+     */
+    public QueryCache getQueryCache() {
+        return cache;
+    }
+    /**
+     * Build a contraction hierarchy of the graph, for fast queries on a graph that does not change,
+     * see ContractionHierarchy.
+     * @return the hierarchy
+     */
+    public ContractionHierarchy buildContractionHierarchy() {
+        return new ContractionHierarchy(snapshot(), myWeightedGraphAlgo);
+    }
     /**
      * Compute a deep copy of this weighted graph.
+     * A WGraph_DS is copied array by array (see WGraph_DS(WGraph_DS)), any other graph
+     * is copied into a pre sized WGraph_DS, every edge once.
      * @return
      */
     @Override
     public weighted_graph copy() {
-        weighted_graph g = new WGraph_DS();
-        for (node_info nd:myWeightedGraphAlgo.getV()) {
-            g.addNode(nd.getKey());
-            for (node_info node: myWeightedGraphAlgo.getV(nd.getKey())) {
-                g.addNode(node.getKey());
-                double w = myWeightedGraphAlgo.getEdge(nd.getKey(),node.getKey());
-                    g.connect(nd.getKey(), node.getKey(), w);
-                }
-            }
+        weighted_graph g0 = myWeightedGraphAlgo;
+        if (g0 instanceof WGraph_DS) return new WGraph_DS((WGraph_DS) g0);
+        WGraph_DS g = new WGraph_DS(g0.nodeSize());
+        for (node_info nd : g0.getV()) {
+            Collection<node_info> ni = g0.getV(nd.getKey());
+            g.addNode(nd.getKey(), ni == null ? 0 : ni.size());
+            node_info copy = g.getNode(nd.getKey());
+            copy.setInfo(nd.getInfo());
+            copy.setTag(nd.getTag());
+        }
+        for (node_info nd : g0.getV()) {
+            int key = nd.getKey();
+            g0.forEachNeighbor(key, (ni, w) -> {
+                if (key < ni) g.connect(key, ni, w);
+            });
+        }
         return g;
     }
     /**
      * Returns true if and only if (iff) there is a valid path from EVREY node to each
      * other node. NOTE: assume ubdirectional graph.
+     * O(1) if the graph is a WGraph_DS with an enabled connectivity index, else a BFS
+     * (over the snapshot if a current one is cached, else over the graph, see KeyBfs).
      * @return
      */
     @Override
     public boolean isConnected() {
-        boolean isConnected = true;
-        if (myWeightedGraphAlgo.getV().isEmpty()) return true;
-        Iterator<node_info> i=myWeightedGraphAlgo.getV().iterator();
-        node_info node=i.next();
-        dijkstras(myWeightedGraphAlgo, node.getKey());
-        while (i.hasNext()) {
-            node_info n = i.next();
-            if (n.getTag()==-1) isConnected = false;
+        if (myWeightedGraphAlgo instanceof WGraph_DS && ((WGraph_DS) myWeightedGraphAlgo).hasConnectivityIndex()) {
+            return ((WGraph_DS) myWeightedGraphAlgo).componentCount() <= 1;
+        }
+        WGraph_CSR g = cachedSnapshot();
+        if (g == null) {
+            KeyBfs bfs = new KeyBfs(myWeightedGraphAlgo);
+            int n = bfs.keys.length;
+            return n == 0 || bfs.run(0, 0) == n;
+        }
+        int n = g.nodeSize();
+        if (n == 0) return true;
+        int[] component = new int[n];
+        Arrays.fill(component, -1);
+        return bfs(g, 0, 0, component, new int[n]) == n;
+    }
+    /**
+     * Compute the connected components of the graph - a BFS from every node that was not
+     * reached yet, O(|V|+|E|) (over the snapshot if a current one is cached, else over the graph).
+     * @return the components
+     */
+    public ConnectedComponents connectedComponents() {
+        WGraph_CSR g = cachedSnapshot();
+        KeyBfs keyBfs = null;
+        int[] component, queue = null;
+        if (g == null) {
+            keyBfs = new KeyBfs(myWeightedGraphAlgo);
+            component = keyBfs.component;
         }
-        return isConnected;
+        else {
+            component = new int[g.nodeSize()];
+            Arrays.fill(component, -1);
+            queue = new int[g.nodeSize()];
+        }
+        int n = component.length;
+        int[] sizes = new int[Math.min(n, 16)];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (component[i] != -1) continue;
+            if (count == sizes.length) sizes = Arrays.copyOf(sizes, 2 * count);
+            sizes[count] = keyBfs != null ? keyBfs.run(i, count) : bfs(g, i, count, component, queue);
+            count++;
+        }
+        IntUnaryOperator index = keyBfs != null ? keyBfs::indexOf : g::indexOf;
+        return new ConnectedComponents(index, component, Arrays.copyOf(sizes, count));
     }
     /**
      * returns the length of the shortest path between src to dest
@@ -86,18 +251,17 @@ public class WGraph_Algo implements weighted_graph_algorithms,java.io.Serializab
      */
     @Override
     public double shortestPathDist(int src, int dest) {
-        double path_Dist;
-        if (myWeightedGraphAlgo.getNode(src) == null || myWeightedGraphAlgo.getNode(dest) == null) return -1;
-        if (src==dest) path_Dist = 0;
-        else {
-            if (myWeightedGraphAlgo.getV(src).isEmpty() || myWeightedGraphAlgo.getV(dest).isEmpty()) path_Dist = -1;
-            else {
-                dijkstras(myWeightedGraphAlgo, src);
-                if (myWeightedGraphAlgo.getNode(dest).getTag() == -1) path_Dist = -1;
-                else path_Dist = myWeightedGraphAlgo.getNode(dest).getTag();
-            }
+        WGraph_CSR g = snapshot();
+        int s = g.indexOf(src), d = g.indexOf(dest);
+        if (s < 0 || d < 0) return -1;
+        if (s == d) return 0;
+        QueryCache c = cache;
+        double dist = c == null ? Double.NaN : c.distance(g, s, d);
+        if (Double.isNaN(dist)) {
+            dist = distance(g, s, d);
+            if (c != null) c.putDistance(g, s, d, dist);
         }
-        return path_Dist;
+        return dist == Double.POSITIVE_INFINITY ? -1 : dist;
     }
     /**
      * returns the the shortest path between src to dest - as an ordered List of nodes:
@@ -110,38 +274,304 @@ public class WGraph_Algo implements weighted_graph_algorithms,java.io.Serializab
      */
     @Override
     public List<node_info> shortestPath(int src, int dest) {
-        LinkedList<node_info> queue = new LinkedList<>();
-        double x= myWeightedGraphAlgo.nodeSize();
-        node_info node = myWeightedGraphAlgo.getNode(dest);
-        if (myWeightedGraphAlgo.getNode(src) == null || node == null) return null;
+        WGraph_CSR g = snapshot();
+        int s = g.indexOf(src), d = g.indexOf(dest);
+        if (s < 0 || d < 0) return null;
+        LinkedList<node_info> path = new LinkedList<>();
+        if (s == d) {
+            path.add(myWeightedGraphAlgo.getNode(src));
+            return path;
+        }
+        QueryCache c = cache;
+        int[] indexes = c == null ? null : c.path(g, s, d);
+        if (indexes == null) {
+            double[] length = new double[1];
+            indexes = path(g, s, d, length);
+            if (c != null) c.putPath(g, s, d, length[0], indexes);
+        }
+        if (indexes == null || indexes == QueryCache.NO_PATH) return null;
+        for (int i : indexes) path.add(myWeightedGraphAlgo.getNode(g.keyAt(i)));
+        return path;
+    }
+    /**
+     * The distance from s to d (node indexes) by the search of this algorithm, infinity if there is no path.
+     */
+    private double distance(WGraph_CSR g, int s, int d) {
+        if (search == Search.DELTA_STEPPING) {
+            double setting = delta;
+            DeltaStepping ds = deltaStepping(g, setting);
+            ds.run(s, d);
+            double dist = ds.dist(d);
+            giveBack(ds, setting);
+            return dist;
+        }
+        ShortestPathTree[] trees = trees(g.nodeSize());
+        try {
+            if (search == Search.BIDIRECTIONAL) {
+                ShortestPathTree f = trees[0], b = trees[1];
+                int meet = bidirectional(g, s, d, f, b);
+                return meet == -1 ? Double.POSITIVE_INFINITY : f.dist[meet] + b.dist[meet];
+            }
+            ShortestPathTree t = trees[0];
+            search(g, s, d, t);
+            return t.settled.get(d) ? t.dist[d] : Double.POSITIVE_INFINITY;
+        }
+        finally {
+            giveBack(trees);
+        }
+    }
+    /**
+     * A shortest path from s to d (node indexes, s first) by the search of this algorithm,
+     * and its length in length[0] (infinity if there is no path).
+     * @return the path, null if there is no path.
+     */
+    private int[] path(WGraph_CSR g, int s, int d, double[] length) {
+        length[0] = Double.POSITIVE_INFINITY;
+        if (search == Search.DELTA_STEPPING) {
+            double setting = delta;
+            DeltaStepping ds = deltaStepping(g, setting);
+            ds.run(s, d);
+            length[0] = ds.dist(d);
+            int[] path = length[0] == Double.POSITIVE_INFINITY ? null : ds.path(s, d);
+            giveBack(ds, setting);
+            return path;
+        }
+        ShortestPathTree[] trees = trees(g.nodeSize());
+        try {
+            if (search == Search.BIDIRECTIONAL) {
+                ShortestPathTree f = trees[0], b = trees[1];
+                int meet = bidirectional(g, s, d, f, b);
+                if (meet == -1) return null;
+                length[0] = f.dist[meet] + b.dist[meet];
+                int[] front = chain(f, meet), back = chain(b, meet);
+                int[] path = new int[front.length + back.length - 1];
+                for (int k = 0; k < front.length; k++) path[k] = front[front.length - 1 - k];
+                System.arraycopy(back, 1, path, front.length, back.length - 1);
+                return path;
+            }
+            ShortestPathTree t = trees[0];
+            search(g, s, d, t);
+            if (!t.settled.get(d)) return null;
+            length[0] = t.dist[d];
+            int[] path = chain(t, d);
+            for (int k = 0, j = path.length - 1; k < j; k++, j--) {
+                int tmp = path[k];
+                path[k] = path[j];
+                path[j] = tmp;
+            }
+            return path;
+        }
+        finally {
+            giveBack(trees);
+        }
+    }
+    // the nodes from i back to the source of the tree
+    private static int[] chain(ShortestPathTree t, int i) {
+        int length = 0;
+        for (int j = i; j != -1; j = t.prev[j]) length++;
+        int[] chain = new int[length];
+        for (int k = 0; i != -1; i = t.prev[i]) chain[k++] = i;
+        return chain;
+    }
+    /**
+     * returns the length of the shortest path between src to dest, by an A* search
+     * that is guided by the estimate h of the distance to dest.
+     * Note: h must be admissible (never more than the real distance), else the result may be too long.
+     * Note: if no such path --> returns -1
+     * @param src - start node
+     * @param dest - end (target) node
+     * @param h - the heuristic
+     * @return
+     */
+    @Override
+    public double shortestPathDist(int src, int dest, heuristic h) {
+        WGraph_CSR g = snapshot();
+        int s = g.indexOf(src), d = g.indexOf(dest);
+        if (s < 0 || d < 0) return -1;
+        if (s == d) return 0;
+        ShortestPathTree[] trees = trees(g.nodeSize());
+        try {
+            ShortestPathTree t = trees[0];
+            astar(g, s, d, h, t);
+            if (!t.settled.get(d)) return -1;
+            return t.dist[d];
+        }
+        finally {
+            giveBack(trees);
+        }
+    }
+    /**
+     * returns the the shortest path between src to dest - as an ordered List of nodes,
+     * by an A* search that is guided by the estimate h of the distance to dest.
+     * Note: h must be admissible (never more than the real distance), else the path may be too long.
+     * Note if no such path --> returns null;
+     * @param src - start node
+     * @param dest - end (target) node
+     * @param h - the heuristic
+     * @return
+     */
+    @Override
+    public List<node_info> shortestPath(int src, int dest, heuristic h) {
+        WGraph_CSR g = snapshot();
+        int s = g.indexOf(src), d = g.indexOf(dest);
+        if (s < 0 || d < 0) return null;
+        LinkedList<node_info> path = new LinkedList<>();
+        if (s == d) {
+            path.add(myWeightedGraphAlgo.getNode(src));
+            return path;
+        }
+        ShortestPathTree[] trees = trees(g.nodeSize());
+        try {
+            ShortestPathTree t = trees[0];
+            astar(g, s, d, h, t);
+            if (!t.settled.get(d)) return null;
+            for (int i = d; i != -1; i = t.prev[i]) path.addFirst(myWeightedGraphAlgo.getNode(g.keyAt(i)));
+            return path;
+        }
+        finally {
+            giveBack(trees);
+        }
+    }
+    /**
+     * Compute the shortest paths from src to all the nodes (a full Dijkstra), so the distance
+     * and the path to every node are answered by the tree without another search.
+     * @param src - start node
+     * @return the tree, null if there is no such node.
+     */
+    public ShortestPathTree shortestPathTree(int src) {
+        return shortestPathTree(src, null);
+    }
+    /**
+     * Compute the shortest paths from src to all the nodes into the given tree,
+     * if it is of a graph with the same number of nodes (else into a new tree),
+     * so a sequence of trees does not allocate its n sized arrays again.
+     * Note: the previous content of the tree is lost.
+     * @param src - start node
+     * @param reuse - a tree from an earlier call, or null
+     * @return the tree (reuse or a new one), null if there is no such node.
+     */
+    public ShortestPathTree shortestPathTree(int src, ShortestPathTree reuse) {
+        WGraph_CSR g = snapshot();
+        int s = g.indexOf(src);
+        if (s < 0) return null;
+        ShortestPathTree t = reuse;
+        if (t == null || t.capacity() != g.nodeSize()) t = new ShortestPathTree(g.nodeSize());
+        else t.reset();
+        QueryCache c = cache;
+        if (c == null || !c.copyTree(g, s, t)) {
+            dijkstra(g, s, -1, t);
+            if (c != null) c.putTree(g, s, t.dist, t.prev);
+        }
+        t.of(g, myWeightedGraphAlgo, s);
+        return t;
+    }
+    /**
+     * Compute the distances from every source to every target, see
+     * shortestPathDists(int[], int[], ForkJoinPool) - on the common ForkJoinPool.
+     * @param sources - the keys of the source nodes
+     * @param targets - the keys of the target nodes, null for all the nodes (by ascending key)
+     * @return double[sources.length][targets.length], -1 if there is no path (or no such node).
+     */
+    public double[][] shortestPathDists(int[] sources, int[] targets) {
+        return shortestPathDists(sources, targets, ForkJoinPool.commonPool());
+    }
+    /**
+     * Compute the distances from every source to every target (e.g. a distance matrix
+     * between points of interest). The Dijkstras of the sources are independent fork join
+     * tasks, each thread reuses its own search arrays, and a search stops when all the
+     * targets are settled.
+     * @param sources - the keys of the source nodes
+     * @param targets - the keys of the target nodes, null for all the nodes (by ascending key)
+     * @param pool - the pool that runs the searches
+     * @return double[sources.length][targets.length], -1 if there is no path (or no such node).
+     */
+    public double[][] shortestPathDists(int[] sources, int[] targets, ForkJoinPool pool) {
+        WGraph_CSR g = snapshot();
+        int n = g.nodeSize();
+        int[] columns;
+        BitSet targetSet = null;
+        int numOfTargets = 0;
+        if (targets == null) {
+            columns = new int[n];
+            for (int i = 0; i < n; i++) columns[i] = i;
+        }
+        else {
+            columns = new int[targets.length];
+            targetSet = new BitSet(n);
+            for (int j = 0; j < targets.length; j++) {
+                columns[j] = g.indexOf(targets[j]);
+                if (columns[j] >= 0) targetSet.set(columns[j]);
+            }
+            numOfTargets = targetSet.cardinality();
+        }
+        double[][] result = new double[sources.length][];
+        pool.invoke(new MultiSource(g, sources, columns, targetSet, numOfTargets, result, 0, sources.length));
+        return result;
+    }
+    /**
+     * The searches of shortestPathDists: the sources lo..hi-1, split in halves down to a single source.
+     */
+    private class MultiSource extends RecursiveAction {
+        private final WGraph_CSR g;
+        private final int[] sources, columns;
+        private final BitSet targetSet;
+        private final int numOfTargets;
+        private final double[][] result;
+        private final int lo, hi;
+
+        MultiSource(WGraph_CSR g, int[] sources, int[] columns, BitSet targetSet, int numOfTargets,
+                    double[][] result, int lo, int hi) {
+            this.g = g;
+            this.sources = sources;
+            this.columns = columns;
+            this.targetSet = targetSet;
+            this.numOfTargets = numOfTargets;
+            this.result = result;
+            this.lo = lo;
+            this.hi = hi;
+        }
 
-        queue.push(node);
-        if (src==dest) return queue;
-        HashMap<node_info, node_info> prevNode= dijkstras(myWeightedGraphAlgo, src);
-        for (int i = 0; i < x; i++) {
-            node = prevNode.get(node);
-            if (node==null) return null;
-            queue.push(node);
-            if (node.getKey() == src) break;
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new MultiSource(g, sources, columns, targetSet, numOfTargets, result, lo, mid),
+                        new MultiSource(g, sources, columns, targetSet, numOfTargets, result, mid, hi));
+                return;
+            }
+            if (hi == lo) return;
+            double[] row = new double[columns.length];
+            result[lo] = row;
+            int s = g.indexOf(sources[lo]);
+            if (s < 0) {
+                Arrays.fill(row, -1);
+                return;
+            }
+            ShortestPathTree[] trees = trees(g.nodeSize());
+            try {
+                ShortestPathTree t = trees[0];
+                if (targetSet == null) dijkstra(g, s, -1, t);
+                else dijkstra(g, s, targetSet, numOfTargets, t);
+                for (int j = 0; j < columns.length; j++) {
+                    int i = columns[j];
+                    row[j] = i < 0 || !t.settled.get(i) ? -1 : t.dist[i];
+                }
+            }
+            finally {
+                giveBack(trees);
+            }
         }
-        if (node.getKey()!=src) return null;
-        if (queue.size()==1) return null;
-        return queue;
     }
     /**
      * Saves this weighted (undirected) graph to the given
-     * file name
+     * file name, in the binary format of WGraph_IO
      * @param file - the file name (may include a relative path).
      * @return true - iff the file was successfully saved
      */
     @Override
     public boolean save(String file) {
         try {
-            FileOutputStream fileOutputStream = new FileOutputStream(file);
-            ObjectOutputStream objectOutputStream = new ObjectOutputStream(fileOutputStream);
-            objectOutputStream.writeObject(this.myWeightedGraphAlgo);
-            fileOutputStream.close();
-            objectOutputStream.close();
+            WGraph_IO.save(this.myWeightedGraphAlgo, file);
         }
         catch (IOException e) {
             e.printStackTrace();
@@ -160,13 +590,23 @@ public class WGraph_Algo implements weighted_graph_algorithms,java.io.Serializab
     @Override
     public boolean load(String file) {
         try {
-            FileInputStream fileInputStream=new FileInputStream(file);
-            ObjectInputStream objectInputStream = new ObjectInputStream(fileInputStream);
-            weighted_graph g = (weighted_graph) objectInputStream.readObject();
+            weighted_graph g;
+            int magic = WGraph_IO.magic(file);
+            if (magic == WGraph_IO.MAGIC) g = WGraph_IO.load(file);
+            else if (magic == WGraph_IO.CSR_MAGIC) g = WGraph_IO.map(file);
+            else if (magic == CompressedGraph.MAGIC) g = WGraph_IO.loadCompressed(file);
+            else {
+                // a graph that was saved with java serialization (before the binary format)
+                FileInputStream fileInputStream=new FileInputStream(file);
+                ObjectInputStream objectInputStream = new ObjectInputStream(fileInputStream);
+                g = (weighted_graph) objectInputStream.readObject();
 
-            fileInputStream.close();
-            objectInputStream.close();
+                fileInputStream.close();
+                objectInputStream.close();
+            }
             myWeightedGraphAlgo=g;
+            snapshot=null;
+            landmarks=null;
         } catch (IOException | ClassNotFoundException e){
             e.printStackTrace();
             return false;
@@ -174,44 +614,361 @@ public class WGraph_Algo implements weighted_graph_algorithms,java.io.Serializab
         return true;
     }
     /**
-     * This method helps to the other functions in this graph algorithm.
-     * @param g - our graph
-     * @param src - start node
-     * @return hashmap of the parents of the nodes,
-     * every node has a paren while the src is the root
-     * (this for the shortestPath function)
-     */
-     public HashMap<node_info,node_info> dijkstras(weighted_graph g, int src) {
-        LinkedList<Integer> queue = new LinkedList();
-        node_info[] nodes = g.getV().toArray(new node_info[g.nodeSize()]);
-        HashMap<node_info,node_info> prevNode=new HashMap<>();
-        for (node_info n : nodes){
-            n.setTag(-1);
-            n.setInfo("white");
-            prevNode.put(n,null);
-        }
-        queue.add(src);
-        myWeightedGraphAlgo.getNode(src).setTag(0);
-        while (queue.size() != 0) {
-            int u = queue.poll();
-            g.getNode(u).setInfo("black");
-            for (node_info n : g.getV(u)) {
+     * Saves this weighted (undirected) graph to the given file name
+     * in the CSR format of WGraph_IO, that load(file) memory maps.
+     * @param file - the file name (may include a relative path).
+     * @return true - iff the file was successfully saved
+     */
+    public boolean saveCSR(String file) {
+        try {
+            WGraph_IO.saveCSR(this.myWeightedGraphAlgo, file);
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+    /**
+     * Saves this weighted (undirected) graph to the given file name
+     * in the compressed format of WGraph_IO, that load(file) loads as well.
+     * @param file - the file name (may include a relative path).
+     * @param coding - the coding of the weights (FLOAT and FIXED round them)
+     * @param step - the step of FIXED (> 0), ignored by the other codings
+     * @return true - iff the file was successfully saved
+     */
+    public boolean saveCompressed(String file, CompressedGraph.Weights coding, double step) {
+        try {
+            WGraph_IO.saveCompressed(this.myWeightedGraphAlgo, file, coding, step);
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+    /**
+     * This method memory maps a graph file in the CSR format (see saveCSR) as the graph
+     * of this graph algorithm - a read only WGraph_CSR that is not copied to the heap.
+     * in case the graph was not loaded the original graph should remain "as is".
+     * Note: load(file) maps a file in the CSR format as well.
+     * @param file - file name
+     * @return true - iff the graph was successfully mapped.
+     */
+    public boolean loadMapped(String file) {
+        try {
+            myWeightedGraphAlgo = WGraph_IO.map(file);
+            snapshot = null;
+            landmarks = null;
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+    /**
+     * Return the CSR snapshot of the graph that the searches run on.
+     * The snapshot is built on the first search after a change of the graph (by its MC),
+     * so a sequence of queries on an unchanged graph pays for it once.
+     * @return WGraph_CSR
+     */
+    private WGraph_CSR snapshot() {
+        weighted_graph g = myWeightedGraphAlgo;
+        if (g instanceof WGraph_CSR) return (WGraph_CSR) g;
+        WGraph_CSR csr = snapshot;
+        if (csr == null || csr.getMC() != g.getMC()) {
+            synchronized (this) {
+                csr = snapshot;
+                if (csr == null || csr.getMC() != g.getMC()) {
+                    snapshot = csr = new WGraph_CSR(g);
+                    // the engine is of the old snapshot, and the pooled trees are if the size changed
+                    engine = null;
+                    pool.retain(csr.nodeSize());
+                }
+            }
+        }
+        return csr;
+    }
+    /**
+     * @return the snapshot of the graph if it is current (or the graph is a snapshot), else null -
+     * for the single pass algorithms that are cheaper than building a new snapshot.
+     */
+    private WGraph_CSR cachedSnapshot() {
+        weighted_graph g = myWeightedGraphAlgo;
+        if (g instanceof WGraph_CSR) return (WGraph_CSR) g;
+        WGraph_CSR csr = snapshot;
+        return csr != null && csr.getMC() == g.getMC() ? csr : null;
+    }
+    /**
+     * The point to point search of Search.DIJKSTRA: A* with the landmark index
+     * if it was built on this snapshot, else Dijkstra.
+     */
+    private void search(WGraph_CSR g, int s, int d, ShortestPathTree t) {
+        LandmarkIndex index = landmarks;
+        if (index != null && index.getGraph() == g) astar(g, s, d, index, t);
+        else dijkstra(g, s, d, t);
+    }
+    /**
+     * Take the DELTA_STEPPING engine of the snapshot g: the engine of the last query if it is
+     * of g and no other query has it (so the n sized arrays and delta are not computed again),
+     * else a new one.
+     */
+    private DeltaStepping deltaStepping(WGraph_CSR g, double setting) {
+        synchronized (this) {
+            DeltaStepping ds = engine;
+            engine = null;
+            if (ds != null && ds.getGraph() == g && engineDelta == setting) return ds;
+        }
+        return new DeltaStepping(g, ForkJoinPool.commonPool(), setting > 0 ? setting : DeltaStepping.defaultDelta(g));
+    }
+    // keep the engine for the next query (unless delta was changed meanwhile)
+    private synchronized void giveBack(DeltaStepping ds, double setting) {
+        if (setting != delta || snapshot != null && ds.getGraph() != snapshot) return;
+        engine = ds;
+        engineDelta = setting;
+    }
+    // two search trees for a snapshot of n nodes, reset (see TreePool), the query gives them back
+    private ShortestPathTree[] trees(int n) {
+        return pool.take(n);
+    }
+    // return the trees of a query to the pool (unless the snapshot changed to another size meanwhile)
+    private void giveBack(ShortestPathTree[] t) {
+        WGraph_CSR csr = snapshot;
+        pool.giveBack(t, csr != null ? csr.nodeSize() : t[0].capacity());
+    }
+    /**
+     * Drop the search state that is kept between the queries (the pooled search trees and
+     * the DELTA_STEPPING engine, O(|V|) each), the next queries allocate it again.
+     * Note: the query cache and the landmark index are kept (see disableQueryCache).
+     */
+    public synchronized void release() {
+        pool.clear();
+        engine = null;
+    }
+    /**
+     * BFS over the snapshot from the index start, marks every reached node with id.
+     * @param g - the snapshot of our graph
+     * @param start - the index of the start node
+     * @param id - the component id
+     * @param component - node index -> component id (-1 if not reached yet)
+     * @param queue - scratch of size n
+     * @return the number of reached nodes
+     */
+    private static int bfs(WGraph_CSR g, int start, int id, int[] component, int[] queue) {
+        int head = 0, tail = 0;
+        queue[tail++] = start;
+        component[start] = id;
+        while (head < tail) {
+            int u = queue[head++];
+            for (int e = g.begin(u), end = g.end(u); e < end; e++) {
+                int v = g.neighborAt(e);
+                if (component[v] == -1) {
+                    component[v] = id;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        return tail;
+    }
+    /**
+     * BFS over a graph without a snapshot: the nodes are numbered in the order of their keys
+     * (as in WGraph_CSR) through a key -> index hash table, and the edges are read with
+     * forEachNeighbor, so it allocates O(|V|) ints and nothing of size |E|.
+     */
+    private static final class KeyBfs implements edge_visitor {
+        private final weighted_graph graph;
+        final int[] keys;
+        private final int[] table; // the key -> index table (see WGraph_CSR.buildIndex), null if the keys are a range
+        final int[] component; // node index -> component id (-1 if not reached yet)
+        private final int[] queue;
+        private int tail;
+        private int id;
 
-                if (!n.getInfo().equals("black")) {
-                    if(!queue.contains(n.getKey())) queue.add(n.getKey());
-                    if(n.getTag() > g.getNode(u).getTag()+ g.getEdge(u,n.getKey()) || n.getTag() ==-1) {
-                        n.setTag(g.getNode(u).getTag() + g.getEdge(u, n.getKey()));
-                        prevNode.replace(n,g.getNode(u));
-                    }
+        KeyBfs(weighted_graph g) {
+            graph = g;
+            int[] ks = new int[g.nodeSize()];
+            int n = 0;
+            for (node_info nd : g.getV()) {
+                if (n == ks.length) ks = Arrays.copyOf(ks, 2 * n + 1);
+                ks[n++] = nd.getKey();
+            }
+            ks = n == ks.length ? ks : Arrays.copyOf(ks, n);
+            Arrays.sort(ks);
+            keys = ks;
+            table = n == 0 || (long) ks[n - 1] - ks[0] == n - 1 ? null : WGraph_CSR.buildIndex(ks);
+            component = new int[n];
+            Arrays.fill(component, -1);
+            queue = new int[n];
+        }
+
+        int indexOf(int key) {
+            if (table != null) return WGraph_CSR.indexOf(keys, table, key);
+            long i = (long) key - (keys.length == 0 ? 0 : keys[0]);
+            return i >= 0 && i < keys.length ? (int) i : -1;
+        }
+        /**
+         * Mark every node that is reached from the index start with id.
+         * @return the number of reached nodes
+         */
+        int run(int start, int id) {
+            this.id = id;
+            int head = 0;
+            tail = 0;
+            queue[tail++] = start;
+            component[start] = id;
+            while (head < tail) graph.forEachNeighbor(keys[queue[head++]], this);
+            return tail;
+        }
+
+        @Override
+        public void visit(int ni, double w) {
+            int v = indexOf(ni);
+            if (v >= 0 && component[v] == -1) {
+                component[v] = id;
+                queue[tail++] = v;
+            }
+        }
+    }
+    /**
+     * This method helps to the other functions in this graph algorithm.
+     * Dijkstra's algorithm with an indexed binary heap as the frontier,
+     * every node is settled once, O((V+E)log(V)).
+     * All the state is kept in t (not in the nodes), so searches can run in parallel.
+     * @param g - the snapshot of our graph
+     * @param src - the index of the start node
+     * @param dest - the index of the end node, the search stops when it is settled (-1 for none)
+     * @param t - a fresh (or reset) tree for the result
+     */
+    static void dijkstra(WGraph_CSR g, int src, int dest, ShortestPathTree t) {
+        double[] dist = t.dist;
+        IndexMinHeap heap = t.heap;
+        t.reach(src, 0, -1);
+        heap.push(src, 0);
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            t.settled.set(u);
+            if (u == dest) break;
+            double du = dist[u];
+            for (int e = g.begin(u), end = g.end(u); e < end; e++) {
+                int v = g.neighborAt(e);
+                double alt = du + g.weightAt(e);
+                if (alt < dist[v]) {
+                    t.reach(v, alt, u);
+                    heap.push(v, alt);
                 }
-                if(n.getTag() > g.getNode(u).getTag()+ g.getEdge(u,n.getKey())) {
-                    n.setTag(g.getNode(u).getTag() + g.getEdge(u, n.getKey()));
-                    prevNode.replace(n,g.getNode(u));
-                    if (!queue.contains(n.getKey())) queue.add(n.getKey());
+            }
+        }
+        heap.clear();
+    }
+    /**
+     * Dijkstra's algorithm that stops when all the targets are settled.
+     * @param g - the snapshot of our graph
+     * @param src - the index of the start node
+     * @param targets - the indexes of the target nodes
+     * @param numOfTargets - the number of target nodes
+     * @param t - a fresh (or reset) tree for the result
+     */
+    static void dijkstra(WGraph_CSR g, int src, BitSet targets, int numOfTargets, ShortestPathTree t) {
+        double[] dist = t.dist;
+        IndexMinHeap heap = t.heap;
+        int remaining = numOfTargets;
+        t.reach(src, 0, -1);
+        heap.push(src, 0);
+        while (!heap.isEmpty() && remaining > 0) {
+            int u = heap.poll();
+            t.settled.set(u);
+            if (targets.get(u)) remaining--;
+            double du = dist[u];
+            for (int e = g.begin(u), end = g.end(u); e < end; e++) {
+                int v = g.neighborAt(e);
+                double alt = du + g.weightAt(e);
+                if (alt < dist[v]) {
+                    t.reach(v, alt, u);
+                    heap.push(v, alt);
+                }
+            }
+        }
+        heap.clear();
+    }
+    /**
+     * A* search: Dijkstra where the frontier is ordered by dist[v] + h(v, dest),
+     * so the nodes in the direction of dest are settled first, and the search stops when dest is settled.
+     * A node whose distance is improved after it was settled is pushed again,
+     * so the result is exact for any admissible h (a consistent h never does that).
+     * @param g - the snapshot of our graph
+     * @param src - the index of the start node
+     * @param dest - the index of the end node
+     * @param h - the heuristic (on node keys)
+     * @param t - a fresh (or reset) tree for the result
+     */
+    static void astar(WGraph_CSR g, int src, int dest, heuristic h, ShortestPathTree t) {
+        double[] dist = t.dist;
+        IndexMinHeap heap = t.heap;
+        int target = g.keyAt(dest);
+        t.reach(src, 0, -1);
+        heap.push(src, h.estimate(g.keyAt(src), target));
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            t.settled.set(u);
+            if (u == dest) break;
+            double du = dist[u];
+            for (int e = g.begin(u), end = g.end(u); e < end; e++) {
+                int v = g.neighborAt(e);
+                double alt = du + g.weightAt(e);
+                if (alt < dist[v]) {
+                    t.reach(v, alt, u);
+                    heap.push(v, alt + h.estimate(g.keyAt(v), target));
+                }
+            }
+        }
+        heap.clear();
+    }
+    /**
+     * Bidirectional Dijkstra: a forward search from src and a backward search from dest
+     * (on the same graph, as it is undirectional) take turns, the side with the lower
+     * frontier key is grown. mu is the shortest src-dest path that was seen so far,
+     * through a node that was reached by both searches. The search stops when the two
+     * frontier keys sum to at least mu - then no shorter path is left, and each side
+     * has settled only the nodes up to about mu/2 from its source.
+     * @param g - the snapshot of our graph
+     * @param src - the index of the start node
+     * @param dest - the index of the end node
+     * @param f - a fresh (or reset) tree for the forward search
+     * @param b - a fresh (or reset) tree for the backward search
+     * @return the index of a node on a shortest path, its length is f.dist[meet]+b.dist[meet]
+     * (f.prev leads to src and b.prev to dest), -1 if there is no path.
+     */
+    static int bidirectional(WGraph_CSR g, int src, int dest, ShortestPathTree f, ShortestPathTree b) {
+        double mu = Double.POSITIVE_INFINITY;
+        int meet = -1;
+        f.reach(src, 0, -1);
+        f.heap.push(src, 0);
+        b.reach(dest, 0, -1);
+        b.heap.push(dest, 0);
+        while (!f.heap.isEmpty() && !b.heap.isEmpty()) {
+            double kf = f.heap.key(f.heap.peek()), kb = b.heap.key(b.heap.peek());
+            if (kf + kb >= mu) break;
+            ShortestPathTree t = kf <= kb ? f : b, o = t == f ? b : f;
+            int u = t.heap.poll();
+            t.settled.set(u);
+            double du = t.dist[u];
+            for (int e = g.begin(u), end = g.end(u); e < end; e++) {
+                int v = g.neighborAt(e);
+                double alt = du + g.weightAt(e);
+                if (alt < t.dist[v]) {
+                    t.reach(v, alt, u);
+                    t.heap.push(v, alt);
+                    if (alt + o.dist[v] < mu) {
+                        mu = alt + o.dist[v];
+                        meet = v;
+                    }
                 }
             }
         }
-        return prevNode;
+        f.heap.clear();
+        b.heap.clear();
+        return meet;
     }
 
     public boolean equals(Object ga) {
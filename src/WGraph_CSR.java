@@ -0,0 +1,558 @@
+package ex1.src;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+/**
+ * This class represents an immutable snapshot of an undirectional weighted graph
+ * in a compressed sparse row (CSR) layout:
+ * keys[i] is the key of the i'th node (sorted), the neighbors of node i are
+ * neighbors[offsets[i]..offsets[i+1]-1] (as node indexes, sorted) and
+ * weights[e] is the weight of the edge stored at neighbors[e].
+ * Every undirected edge is stored once in each direction, so a graph with |E| edges
+ * takes 4*|V| + 12*2*|E| bytes, and no object per node or per edge.
+ * A memory mapped file (see WGraph_IO.map) is a WGraph_MappedCSR, that reads the same layout
+ * from the file - then the graph is not copied to the heap.
+ * The snapshot supports all the read operations of weighted_graph (so every
+ * WGraph_Algo algorithm runs on it), the mutating operations throw UnsupportedOperationException.
+ * Note: hasEdge/getEdge are binary searches in the row of node1 - O(log(k)) and not O(1),
+ * getNode of a mapped file is a binary search - O(log(n)).
+ */
+public class WGraph_CSR implements weighted_graph,java.io.Serializable {
+    // the arrays of a snapshot on the heap (null for a mapped file, see WGraph_MappedCSR)
+    private transient int[] keys;
+    private transient int[] offsets;
+    private transient int[] neighbors;
+    private transient double[] weights;
+    // key -> index+1 hash table (open addressing, 0 is empty), null if dense
+    private transient int[] index;
+    // true if the keys are a range (keys[i] == keys[0] + i), then no lookup is needed
+    private transient boolean dense;
+    private final int numOfNodes;
+    private final int numOfEdges;
+    private final int MC;
+    // node meta data (tag, info), allocated on first use
+    private double[] tags;
+    private String[] infos;
+
+    /**
+     * Build a CSR snapshot of the given graph, O(|V|log|V| + |E|log(k)) (sorting the keys and the rows).
+     * The graph is read in a single pass (getV() and then forEachNeighbor per node),
+     * so a graph that is changed concurrently gives a weakly consistent snapshot
+     * with the MC from before the pass.
+     * @param g - the graph to copy
+     */
+    public WGraph_CSR(weighted_graph g) {
+        MC = g.getMC();
+        int[] ks = new int[g.nodeSize()];
+        int n = 0;
+        for (node_info nd : g.getV()) {
+            if (n == ks.length) ks = Arrays.copyOf(ks, 2 * n + 1);
+            ks[n++] = nd.getKey();
+        }
+        ks = Arrays.copyOf(ks, n);
+        Arrays.sort(ks);
+        keys = ks;
+        numOfNodes = n;
+        dense = n > 0 && (long) ks[n - 1] - ks[0] == n - 1;
+        if (!dense) index = buildIndex(ks);
+        int[] off = new int[n + 1];
+        Rows rows = new Rows(2 * g.edgeSize());
+        for (int i = 0; i < n; i++) {
+            int begin = rows.size;
+            g.forEachNeighbor(ks[i], rows);
+            sortRow(rows.neighbors, rows.weights, begin, rows.size);
+            off[i + 1] = rows.size;
+        }
+        offsets = off;
+        neighbors = Arrays.copyOf(rows.neighbors, rows.size);
+        weights = Arrays.copyOf(rows.weights, rows.size);
+        numOfEdges = rows.size / 2;
+    }
+    /**
+     * A CSR graph whose layout is kept elsewhere (see WGraph_MappedCSR), that overrides
+     * indexOf, keyAt, begin, end, neighborAt, weightAt and the buffer accessors.
+     * @param numOfNodes
+     * @param numOfEdges
+     * @param MC - the mode count of the graph
+     */
+    WGraph_CSR(int numOfNodes, int numOfEdges, int MC) {
+        this.numOfNodes = numOfNodes;
+        this.numOfEdges = numOfEdges;
+        this.MC = MC;
+    }
+    /**
+     * return the node_data by the node_id,
+     * Note: the returned node is a view of the snapshot.
+     * @param key - the node_id
+     * @return the node_data by the node_id, null if none.
+     */
+    @Override
+    public node_info getNode(int key) {
+        int i = indexOf(key);
+        if (i < 0) return null;
+        return new NodeView(i);
+    }
+    /**
+     * return true iff (if and only if) there is an edge between node1 and node2
+     * Note: this method runs in O(log(k)) time, k - being the degree of node1.
+     * @param node1
+     * @param node2
+     * @return
+     */
+    @Override
+    public boolean hasEdge(int node1, int node2) {
+        return edgeIndex(node1, node2) >= 0;
+    }
+    /**
+     * return the weight if the edge (node1, node1). In case
+     * there is no such edge - should return -1
+     * Note: this method runs in O(log(k)) time, k - being the degree of node1.
+     * @param node1
+     * @param node2
+     * @return
+     */
+    @Override
+    public double getEdge(int node1, int node2) {
+        if (node1 == node2) return indexOf(node1) < 0 ? -1 : 0;
+        int e = edgeIndex(node1, node2);
+        if (e < 0) return -1;
+        return weightAt(e);
+    }
+    /**
+     * Not supported - the snapshot is immutable.
+     */
+    @Override
+    public void addNode(int key) {
+        throw new UnsupportedOperationException("WGraph_CSR is an immutable snapshot");
+    }
+    /**
+     * Not supported - the snapshot is immutable.
+     */
+    @Override
+    public void connect(int node1, int node2, double w) {
+        throw new UnsupportedOperationException("WGraph_CSR is an immutable snapshot");
+    }
+    /**
+     * Not supported - the snapshot is immutable.
+     */
+    @Override
+    public void connectAll(int[] src, int[] dst, double[] w) {
+        throw new UnsupportedOperationException("WGraph_CSR is an immutable snapshot");
+    }
+    /**
+     * This method return a Collection view of all the nodes in the graph,
+     * ordered by key.
+     * @return Collection<node_data>
+     */
+    @Override
+    public Collection<node_info> getV() {
+        return new Nodes(0, numOfNodes, false);
+    }
+    /**
+     * This method returns a Collection view of all the
+     * nodes connected to node_id, ordered by key.
+     * Note: this method can run in O(k) time, k - being the degree of node_id.
+     * @return Collection<node_data>
+     */
+    @Override
+    public Collection<node_info> getV(int node_id) {
+        int i = indexOf(node_id);
+        if (i < 0) return null;
+        return new Nodes(begin(i), end(i), true);
+    }
+    /**
+     * Visit all the edges of node_id in one pass, ordered by neighbor key.
+     * Note: this method can run in O(k) time, k - being the degree of node_id.
+     * @param node_id
+     * @param visitor
+     */
+    @Override
+    public void forEachNeighbor(int node_id, edge_visitor visitor) {
+        int i = indexOf(node_id);
+        if (i < 0) return;
+        for (int e = begin(i), end = end(i); e < end; e++) visitor.visit(keyAt(neighborAt(e)), weightAt(e));
+    }
+    /**
+     * Not supported - the snapshot is immutable.
+     */
+    @Override
+    public node_info removeNode(int key) {
+        throw new UnsupportedOperationException("WGraph_CSR is an immutable snapshot");
+    }
+    /**
+     * Not supported - the snapshot is immutable.
+     */
+    @Override
+    public void removeEdge(int node1, int node2) {
+        throw new UnsupportedOperationException("WGraph_CSR is an immutable snapshot");
+    }
+    /**
+     * Not supported - the snapshot is immutable.
+     */
+    @Override
+    public void removeEdges(int[] node1, int[] node2) {
+        throw new UnsupportedOperationException("WGraph_CSR is an immutable snapshot");
+    }
+    /** return the number of vertices (nodes) in the graph.
+     * @return
+     */
+    @Override
+    public int nodeSize() {
+        return numOfNodes;
+    }
+    /**
+     * return the number of edges (undirectional graph).
+     * @return
+     */
+    @Override
+    public int edgeSize() {
+        return numOfEdges;
+    }
+    /**
+     * return the Mode Count of the graph this snapshot was taken from.
+     * @return
+     */
+    @Override
+    public int getMC() {
+        return MC;
+    }
+    /**
+     * @param key - a node key
+     * @return the index of the node in this snapshot, a negative number if none.
+     * O(1) (a hash table lookup, or none if the keys are a range).
+     */
+    int indexOf(int key) {
+        if (dense) {
+            long i = (long) key - keys[0];
+            return i >= 0 && i < numOfNodes ? (int) i : -1;
+        }
+        return indexOf(keys, index, key);
+    }
+    /**
+     * @param keys - the keys by node index
+     * @param table - the hash table of the keys (see buildIndex)
+     * @param key - a node key
+     * @return the index of the key in keys, a negative number if none.
+     */
+    static int indexOf(int[] keys, int[] table, int key) {
+        int mask = table.length - 1;
+        for (int s = slot(key, mask); ; s = (s + 1) & mask) {
+            int i = table[s] - 1;
+            if (i < 0 || keys[i] == key) return i;
+        }
+    }
+    // an open addressing table of the indexes of the keys (+1, 0 is an empty slot)
+    static int[] buildIndex(int[] keys) {
+        int capacity = 2;
+        while (capacity < 2 * keys.length) capacity <<= 1;
+        int[] table = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < keys.length; i++) {
+            int s = slot(keys[i], mask);
+            while (table[s] != 0) s = (s + 1) & mask;
+            table[s] = i + 1;
+        }
+        return table;
+    }
+
+    private static int slot(int key, int mask) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+    /**
+     * @param i - a node index
+     * @return the key of the i'th node.
+     */
+    int keyAt(int i) {
+        return keys[i];
+    }
+    /**
+     * @param i - a node index
+     * @return the position of the first edge of node i.
+     */
+    int begin(int i) {
+        return offsets[i];
+    }
+    /**
+     * @param i - a node index
+     * @return the position after the last edge of node i.
+     */
+    int end(int i) {
+        return offsets[i + 1];
+    }
+    /**
+     * @param e - an edge position
+     * @return the index of the node at the other end of the edge.
+     */
+    int neighborAt(int e) {
+        return neighbors[e];
+    }
+    /**
+     * @param e - an edge position
+     * @return the weight of the edge.
+     */
+    double weightAt(int e) {
+        return weights[e];
+    }
+
+    private int edgeIndex(int node1, int node2) {
+        int u = indexOf(node1);
+        int v = indexOf(node2);
+        if (u < 0 || v < 0) return -1;
+        int low = begin(u), high = end(u) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int w = neighborAt(mid);
+            if (w < v) low = mid + 1;
+            else if (w > v) high = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+    /**
+     * @return the index of key in a[from..to-1] (sorted), or -(insertion point + 1).
+     */
+    static int binarySearch(IntBuffer a, int from, int to, int key) {
+        int low = from, high = to - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int v = a.get(mid);
+            if (v < key) low = mid + 1;
+            else if (v > key) high = mid - 1;
+            else return mid;
+        }
+        return -(low + 1);
+    }
+    /**
+     * @return the underlying buffers: keys, offsets, neighbors (for saving the graph).
+     */
+    IntBuffer[] intBuffers() {
+        return new IntBuffer[]{IntBuffer.wrap(keys), IntBuffer.wrap(offsets), IntBuffer.wrap(neighbors)};
+    }
+    /**
+     * @return the underlying buffer of the weights (for saving the graph).
+     */
+    DoubleBuffer weightBuffer() {
+        return DoubleBuffer.wrap(weights);
+    }
+
+    /**
+     * @return a copy of this snapshot on the heap (with the tags and the infos of the nodes).
+     */
+    WGraph_CSR onHeap() {
+        WGraph_CSR copy = new WGraph_CSR(this);
+        if (tags != null) copy.tags = tags.clone();
+        if (infos != null) copy.infos = infos.clone();
+        return copy;
+    }
+
+    // sort the edges from..to-1 by neighbor index (quicksort, insertion sort for short rows)
+    private static void sortRow(int[] nbr, double[] w, int from, int to) {
+        while (to - from > 16) {
+            int pivot = nbr[(from + to) >>> 1];
+            int i = from, j = to - 1;
+            while (i <= j) {
+                while (nbr[i] < pivot) i++;
+                while (nbr[j] > pivot) j--;
+                if (i <= j) swap(nbr, w, i++, j--);
+            }
+            if (j - from < to - i) {
+                sortRow(nbr, w, from, j + 1);
+                from = i;
+            }
+            else {
+                sortRow(nbr, w, i, to);
+                to = j + 1;
+            }
+        }
+        for (int i = from + 1; i < to; i++) {
+            for (int j = i; j > from && nbr[j - 1] > nbr[j]; j--) swap(nbr, w, j, j - 1);
+        }
+    }
+
+    private static void swap(int[] nbr, double[] w, int i, int j) {
+        int t = nbr[i];
+        nbr[i] = nbr[j];
+        nbr[j] = t;
+        double tw = w[i];
+        w[i] = w[j];
+        w[j] = tw;
+    }
+
+    public String toString(){ return String.valueOf(this.getV()); }
+
+    // a heap snapshot and a mapped file with the same layout are equal
+    public boolean equals(Object g) {
+        if (this == g) return true;
+        if (!(g instanceof WGraph_CSR)) return false;
+        WGraph_CSR graph = (WGraph_CSR) g;
+        if (numOfNodes != graph.numOfNodes || numOfEdges != graph.numOfEdges) return false;
+        for (int i = 0; i < numOfNodes; i++) {
+            if (keyAt(i) != graph.keyAt(i) || end(i) != graph.end(i)) return false;
+        }
+        for (int e = 0; e < 2 * numOfEdges; e++) {
+            if (neighborAt(e) != graph.neighborAt(e) || Double.compare(weightAt(e), graph.weightAt(e)) != 0) return false;
+        }
+        return true;
+    }
+
+    public int hashCode() {
+        int h = 1;
+        for (int i = 0; i < numOfNodes; i++) h = 31 * h + keyAt(i);
+        for (int e = 0; e < 2 * numOfEdges; e++) h = 31 * h + neighborAt(e);
+        return h;
+    }
+
+    // the arrays are written after the fields
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(keys);
+        out.writeObject(offsets);
+        out.writeObject(neighbors);
+        out.writeObject(weights);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        keys = (int[]) in.readObject();
+        offsets = (int[]) in.readObject();
+        neighbors = (int[]) in.readObject();
+        weights = (double[]) in.readObject();
+        dense = numOfNodes > 0 && (long) keys[numOfNodes - 1] - keys[0] == numOfNodes - 1;
+        if (!dense) index = buildIndex(keys);
+    }
+
+    /**
+     * Collects the rows of the snapshot while it is built: appends every visited edge
+     * (as neighbor index and weight), edges to nodes that are not in the snapshot are dropped.
+     */
+    private class Rows implements edge_visitor {
+        private int[] neighbors;
+        private double[] weights;
+        private int size;
+
+        Rows(int capacity) {
+            neighbors = new int[capacity];
+            weights = new double[capacity];
+        }
+
+        @Override
+        public void visit(int ni, double w) {
+            int v = indexOf(ni);
+            if (v < 0) return;
+            if (size == neighbors.length) {
+                neighbors = Arrays.copyOf(neighbors, 2 * size + 8);
+                weights = Arrays.copyOf(weights, 2 * size + 8);
+            }
+            neighbors[size] = v;
+            weights[size] = w;
+            size++;
+        }
+    }
+
+    /**
+     * A read only collection of node views: the indexes from..to-1,
+     * or the neighbors at the edge positions from..to-1.
+     */
+    private class Nodes extends AbstractCollection<node_info> {
+        private final int from, to;
+        private final boolean edges;
+
+        Nodes(int from, int to, boolean edges) {
+            this.from = from;
+            this.to = to;
+            this.edges = edges;
+        }
+
+        @Override
+        public Iterator<node_info> iterator() {
+            return new Iterator<node_info>() {
+                private int k = from;
+
+                @Override
+                public boolean hasNext() {
+                    return k < to;
+                }
+
+                @Override
+                public node_info next() {
+                    if (k >= to) throw new NoSuchElementException();
+                    int i = edges ? neighborAt(k) : k;
+                    k++;
+                    return new NodeView(i);
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+
+    /**
+     * A view of the i'th node of the snapshot, the tag and info are kept in the snapshot.
+     */
+    private class NodeView implements node_info {
+        private final int index;
+
+        NodeView(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public int getKey() {
+            return keyAt(index);
+        }
+
+        @Override
+        public String getInfo() {
+            return infos == null ? null : infos[index];
+        }
+
+        @Override
+        public void setInfo(String s) {
+            if (infos == null) infos = new String[numOfNodes];
+            infos[index] = s;
+        }
+
+        @Override
+        public double getTag() {
+            return tags == null ? 0 : tags[index];
+        }
+
+        @Override
+        public void setTag(double t) {
+            if (tags == null) tags = new double[numOfNodes];
+            tags[index] = t;
+        }
+
+        public String toString() {
+            return String.valueOf(this.getKey());
+        }
+
+        public boolean equals(Object n) {
+            if (this == n) return true;
+            if (n == null || getClass() != n.getClass()) return false;
+            NodeView node = (NodeView) n;
+            return index == node.index && graph() == node.graph();
+        }
+
+        public int hashCode() {
+            return Objects.hash(keyAt(index));
+        }
+
+        private WGraph_CSR graph() {
+            return WGraph_CSR.this;
+        }
+    }
+}
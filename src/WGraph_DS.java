@@ -1,8 +1,13 @@
 package ex1.src;
 
+import java.util.AbstractCollection;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 /**
  * This interface represents an undirectional weighted graph.
  * It should support a large number of nodes (over 10^6, with average degree of 10).
@@ -11,17 +16,84 @@ import java.util.Objects;
  *
  */
 public class WGraph_DS implements weighted_graph,java.io.Serializable {
+    private static final int PARALLEL_BATCH = 1 << 16; // the fewest half edges of a connectAll that are put by several threads
     private int MC;
-    private HashMap<Integer, node_info> myWeightedGraph;
+    private IntObjectMap<node_info> myWeightedGraph;
     private int numOfNodes;
     private int numOfEdges;
+    // the connected components, kept up to date by the mutations (null if not enabled)
+    private transient ConnectivityIndex connectivity;
+    // the coordinates of the nodes for the A* heuristics (null if none)
+    private NodeCoordinates coordinates;
+    // a snapshot (see snapshot()) can not be changed
+    private final boolean readOnly;
+    // the write ahead log of the mutations (null if none)
+    private transient MutationLog log;
     //copy constructor
     public WGraph_DS(){
-        this.myWeightedGraph=new HashMap<>();
+        this(0);
+    }
+    /**
+     * @param expectedNodes - the number of nodes to allocate room for.
+     */
+    public WGraph_DS(int expectedNodes){
+        this.myWeightedGraph=new IntObjectMap<>(expectedNodes);
+        readOnly = false;
         numOfNodes = 0;
         numOfEdges = 0;
         MC = 0;
     }
+    /**
+     * A deep copy of the given graph: the node map and the adjacency of every node
+     * are copied array by array (same capacities, no rehashing and no per edge checks),
+     * O(|V|+|E|). The coordinates are copied, the connectivity index is not.
+     * @param other
+     */
+    public WGraph_DS(WGraph_DS other) {
+        this(other, false, false);
+    }
+
+    private WGraph_DS(WGraph_DS other, boolean shareAdjacency, boolean readOnly) {
+        this.myWeightedGraph = new IntObjectMap<>(other.myWeightedGraph,
+                n -> new NodeInfo((NodeInfo) n, shareAdjacency));
+        this.readOnly = readOnly;
+        this.numOfNodes = other.numOfNodes;
+        this.numOfEdges = other.numOfEdges;
+        this.MC = other.MC;
+        if (other.coordinates != null) this.coordinates = new NodeCoordinates(other.coordinates);
+    }
+    /**
+     * A copy on write clone of this graph: the clone has its own nodes, but shares the
+     * adjacency of every node with this graph until one of the two graphs changes the edges
+     * of that node (then that graph copies the adjacency of the node first).
+     * So the clone costs O(|V|), and every later change copies at most one adjacency per node
+     * (also in this graph, even after the clone is gone).
+     * The coordinates are copied, the connectivity index is not.
+     * Note: the two graphs must not be changed by different threads at the same time.
+     * @return the clone
+     */
+    public WGraph_DS copyOnWrite() {
+        return new WGraph_DS(this, true, false);
+    }
+    /**
+     * An immutable snapshot of the current state of this graph, whose getMC() is its version:
+     * a read only copy on write clone (see copyOnWrite), O(|V|), that later changes of this graph
+     * do not reach (this graph copies the adjacency of a node before it changes it).
+     * The snapshot may be read by any number of threads while this graph is changed,
+     * see VersionedGraph. Its mutations throw UnsupportedOperationException
+     * (the tag and the info of its nodes are its own, and may be set).
+     * Note: this graph must not be changed by another thread while the snapshot is taken.
+     * @return the snapshot
+     */
+    public WGraph_DS snapshot() {
+        return new WGraph_DS(this, true, true);
+    }
+    /**
+     * @return true iff this graph is a snapshot (see snapshot()) and can not be changed.
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
     /**
      * return the node_data by the node_id,
      * @param key - the node_id
@@ -40,11 +112,8 @@ public class WGraph_DS implements weighted_graph,java.io.Serializable {
      */
     @Override
     public boolean hasEdge(int node1, int node2) {
-        boolean hasEdge = false;
-        if (myWeightedGraph.containsKey(node1) && myWeightedGraph.containsKey(node2)) {
-            if (((NodeInfo) myWeightedGraph.get(node1)).hashNi.values().contains(myWeightedGraph.get(node2))) hasEdge = true;
-        }
-        return hasEdge;
+        NodeInfo nd1 = (NodeInfo) myWeightedGraph.get(node1);
+        return nd1 != null && nd1.ni.containsKey(node2);
     }
     /**
      * return the weight if the edge (node1, node1). In case
@@ -56,12 +125,11 @@ public class WGraph_DS implements weighted_graph,java.io.Serializable {
      */
     @Override
     public double getEdge(int node1, int node2) {
-        double w = -1;
-        NodeInfo nd= new NodeInfo((NodeInfo) myWeightedGraph.get(node1));
-        if (node1==node2) w=0;
-        if(hasEdge(node1,node2))
-            w=nd.weightOfEdges.get(node2);
-        return w;
+        NodeInfo nd1 = (NodeInfo) myWeightedGraph.get(node1);
+        if (nd1 == null) return -1;
+        if (node1 == node2) return 0;
+        double w = nd1.ni.get(node2);
+        return Double.isNaN(w) ? -1 : w;
     }
     /**
      * add a new node to the graph with the given key.
@@ -71,14 +139,22 @@ public class WGraph_DS implements weighted_graph,java.io.Serializable {
      */
     @Override
     public void addNode(int key) {
+        addNode(key, 0);
+    }
+    /**
+     * add a new node with room for expectedDegree edges (so its adjacency is not resized
+     * while it is filled), no action if there is already a node with such a key.
+     * @param key
+     * @param expectedDegree
+     */
+    void addNode(int key, int expectedDegree) {
+        writable();
         if (!myWeightedGraph.containsKey(key)){
-            NodeInfo nd= new NodeInfo(key);
-            nd.hashNi = new HashMap<>();
-            nd.weightOfEdges = new HashMap<>();
-            NodeInfo n= new NodeInfo(nd);
-            myWeightedGraph.put(key,n);
+            myWeightedGraph.put(key,new NodeInfo(key, expectedDegree));
             numOfNodes++;
             MC++;
+            if (connectivity != null) connectivity.addNode(key);
+            if (log != null) log.addNode(key);
         }
     }
     /**
@@ -88,26 +164,19 @@ public class WGraph_DS implements weighted_graph,java.io.Serializable {
      */
     @Override
     public void connect(int node1, int node2, double w) {
+        writable();
         WGraph_DS.NodeInfo nd1 = (NodeInfo) myWeightedGraph.get(node1);
         WGraph_DS.NodeInfo nd2 = (NodeInfo) myWeightedGraph.get(node2);
-        if (hasEdge(node1,node2) && w!=nd1.weightOfEdges.get(nd2.getKey())) {
-            nd1.weightOfEdges.remove(node2);
-            nd2.weightOfEdges.remove(node1);
-            nd1.weightOfEdges.put(node2,w);
-            nd2.weightOfEdges.put(node1,w);
+        if (nd1 == null || nd2 == null || node1 == node2 || !(w >= 0)) return;
+        double old = nd1.adjacency().put(node2, w);
+        nd2.adjacency().put(node1, w);
+        if (Double.isNaN(old)) {
+            numOfEdges++;
             MC++;
+            if (connectivity != null) connectivity.connect(node1, node2);
         }
-
-        if (!hasEdge(node1,node2) && node1!=node2) {
-            if (w>=0) {
-                nd1.hashNi.put(node2,nd2);
-                nd2.hashNi.put(node1,nd1);
-                nd1.weightOfEdges.put(node2,w);
-                nd2.weightOfEdges.put(node1,w);
-                numOfEdges++;
-                MC++;
-            }
-        }
+        else if (old != w) MC++;
+        if (log != null && old != w) log.connect(node1, node2, w);
     }
     /**
      * This method return a pointer (shallow copy) for a
@@ -129,8 +198,24 @@ public class WGraph_DS implements weighted_graph,java.io.Serializable {
     @Override
     public Collection<node_info> getV(int node_id) {
         NodeInfo node= (NodeInfo) myWeightedGraph.get(node_id);
-        if (node.hashNi==null) return null;
-        else return node.hashNi.values();
+        if (node==null) return null;
+        return new Neighbors(node.ni);
+    }
+    /**
+     * Visit all the edges of node_id in one pass:
+     * for every neighbor ni of node_id, call visitor.visit(ni, w(node_id,ni)).
+     * Note: this method can run in O(k) time, k - being the degree of node_id.
+     * @param node_id
+     * @param visitor
+     */
+    @Override
+    public void forEachNeighbor(int node_id, edge_visitor visitor) {
+        NodeInfo node = (NodeInfo) myWeightedGraph.get(node_id);
+        if (node == null) return;
+        IntDoubleMap ni = node.ni;
+        for (int s = 0; s < ni.slots(); s++) {
+            if (ni.used(s)) visitor.visit(ni.keyAt(s), ni.valueAt(s));
+        }
     }
     /**
      * Delete the node (with the given ID) from the graph -
@@ -141,21 +226,25 @@ public class WGraph_DS implements weighted_graph,java.io.Serializable {
      */
     @Override
     public node_info removeNode(int key) {
+        writable();
         if (myWeightedGraph.containsKey(key)) {
             NodeInfo node = (NodeInfo) myWeightedGraph.get(key);
             numOfNodes--;
             MC++;
-            int Ni_size = node.hashNi.size();
-            numOfEdges = numOfEdges - Ni_size;
-            node_info[] niNodes = node.hashNi.values().toArray(new node_info[Ni_size]);
-            NodeInfo nd;
-            for (node_info n: niNodes) {
-                nd = (NodeInfo) n;
-                nd.hashNi.remove(node.getKey());
-                nd.weightOfEdges.remove(node.getKey());
+            numOfEdges = numOfEdges - node.ni.size();
+            IntDoubleMap ni = node.ni;
+            int[] neighbors = new int[connectivity == null ? 0 : ni.size()];
+            int k = 0;
+            for (int s = 0; s < ni.slots(); s++) {
+                if (!ni.used(s)) continue;
+                ((NodeInfo) myWeightedGraph.get(ni.keyAt(s))).adjacency().remove(key);
+                if (connectivity != null) neighbors[k++] = ni.keyAt(s);
                 MC++;
             }
             myWeightedGraph.remove(key);
+            if (coordinates != null) coordinates.remove(key);
+            if (connectivity != null) connectivity.removeNode(key, neighbors);
+            if (log != null) log.removeNode(key);
         }
         return myWeightedGraph.get(key);
     }
@@ -167,16 +256,152 @@ public class WGraph_DS implements weighted_graph,java.io.Serializable {
      */
     @Override
     public void removeEdge(int node1, int node2) {
+        writable();
         if (hasEdge(node1,node2)) {
             NodeInfo nd1= (NodeInfo) myWeightedGraph.get(node1);
             NodeInfo nd2= (NodeInfo) myWeightedGraph.get(node2);
-            nd1.hashNi.remove(node2);
-            nd2.hashNi.remove(node1);
-            nd1.weightOfEdges.remove(node2);
-            nd2.weightOfEdges.remove(node1);
+            nd1.adjacency().remove(node2);
+            nd2.adjacency().remove(node1);
             numOfEdges--;
             MC++;
+            if (connectivity != null) connectivity.removeEdge(node1, node2);
+            if (log != null) log.removeEdge(node1, node2);
+        }
+    }
+    /**
+     * Apply a batch of edges: for every e, add the nodes src[e] and dst[e] (if missing)
+     * and connect the edge src[e]-dst[e] with the weight w[e] (a later edge of the batch wins,
+     * an edge of a node with itself or with a negative weight is skipped, its nodes are added).
+     * The half edges are grouped by their node first (a counting sort that keeps the batch order),
+     * so every node is looked up once, its adjacency is resized once, and its half edges are
+     * put one after the other (no hasEdge checks, no jumping between the nodes of the graph),
+     * an edge that appears more than once in the batch is put once, with its last weight.
+     * A large batch is applied by several threads, each owning a range of the nodes.
+     * The MC is incremented once for the whole batch (if anything changed).
+     * @param src - the first nodes of the edges
+     * @param dst - the second nodes of the edges
+     * @param w - the weights of the edges
+     */
+    @Override
+    public void connectAll(int[] src, int[] dst, double[] w) {
+        writable();
+        int size = src.length;
+        if (dst.length != size || w.length != size) throw new IllegalArgumentException("the batch arrays differ in length");
+        if (size == 0) return;
+        // the nodes of the batch by their first appearance: key -> id, and the number of half edges of every id
+        IntDoubleMap ids = new IntDoubleMap(Math.min(2 * size, 1 << 20));
+        int[] keys = new int[16];
+        int[] count = new int[16];
+        int[] end1 = new int[size], end2 = new int[size];
+        int numOfIds = 0;
+        for (int e = 0; e < size; e++) {
+            for (int side = 0; side < 2; side++) {
+                int key = side == 0 ? src[e] : dst[e];
+                double id = ids.get(key);
+                if (Double.isNaN(id)) {
+                    if (numOfIds == keys.length) {
+                        keys = Arrays.copyOf(keys, 2 * numOfIds);
+                        count = Arrays.copyOf(count, 2 * numOfIds);
+                    }
+                    keys[numOfIds] = key;
+                    ids.put(key, id = numOfIds++);
+                }
+                if (side == 0) end1[e] = (int) id;
+                else end2[e] = (int) id;
+            }
+            if (valid(src[e], dst[e], w[e])) {
+                count[end1[e]]++;
+                count[end2[e]]++;
+            }
+        }
+        // the half edges of id i are half[offset[i]..offset[i+1]-1], 2e for src[e] and 2e+1 for dst[e]
+        int[] offset = new int[numOfIds + 1];
+        for (int i = 0; i < numOfIds; i++) offset[i + 1] = offset[i] + count[i];
+        int[] half = new int[offset[numOfIds]];
+        int[] next = Arrays.copyOf(offset, numOfIds);
+        for (int e = 0; e < size; e++) {
+            if (!valid(src[e], dst[e], w[e])) continue;
+            half[next[end1[e]]++] = 2 * e;
+            half[next[end2[e]]++] = 2 * e + 1;
+        }
+        boolean changed = false;
+        NodeInfo[] nodes = new NodeInfo[numOfIds];
+        myWeightedGraph.ensureCapacity(numOfNodes + numOfIds);
+        for (int i = 0; i < numOfIds; i++) {
+            NodeInfo node = (NodeInfo) myWeightedGraph.get(keys[i]);
+            if (node == null) {
+                node = new NodeInfo(keys[i], count[i]);
+                myWeightedGraph.put(keys[i], node);
+                numOfNodes++;
+                changed = true;
+                if (connectivity != null) connectivity.addNode(keys[i]);
+            }
+            else if (count[i] > 0) node.adjacency().ensureCapacity(node.ni.size() + count[i]);
+            nodes[i] = node;
+        }
+        boolean[] isNew = new boolean[size];
+        int n = numOfIds;
+        int[] keyOf = keys;
+        int parts = half.length < PARALLEL_BATCH ? 1 : Math.min(16, ForkJoinPool.getCommonPoolParallelism());
+        boolean[] changes = new boolean[parts];
+        IntStream range = IntStream.range(0, parts);
+        (parts > 1 ? range.parallel() : range).forEach(t -> {
+            int from = (int) ((long) n * t / parts), to = (int) ((long) n * (t + 1) / parts);
+            long[] sorted = new long[16];
+            for (int i = from; i < to; i++) {
+                IntDoubleMap ni = nodes[i].ni;
+                // the half edges of the node by (neighbor, batch order), only the last of every neighbor is put
+                int d = offset[i + 1] - offset[i];
+                if (d > sorted.length) sorted = new long[Math.max(d, 2 * sorted.length)];
+                for (int k = 0; k < d; k++) {
+                    int h = offset[i] + k, e = half[h] >> 1;
+                    int other = (half[h] & 1) == 0 ? dst[e] : src[e];
+                    sorted[k] = (long) other << 32 | h;
+                }
+                Arrays.sort(sorted, 0, d);
+                for (int k = 0; k < d; k++) {
+                    int other = (int) (sorted[k] >> 32);
+                    if (k + 1 < d && (int) (sorted[k + 1] >> 32) == other) continue;
+                    int e = half[(int) sorted[k]] >> 1;
+                    double old = ni.put(other, w[e]);
+                    if (old != w[e]) changes[t] = true;
+                    // an edge is new iff the half edge of its smaller node was not there
+                    if (keyOf[i] < other && Double.isNaN(old)) isNew[e] = true;
+                }
+            }
+        });
+        for (boolean c : changes) changed |= c;
+        for (int e = 0; e < size; e++) {
+            if (!isNew[e]) continue;
+            numOfEdges++;
+            if (connectivity != null) connectivity.connect(src[e], dst[e]);
+        }
+        if (changed) MC++;
+        if (changed && log != null) log.connectAll(src, dst, w);
+    }
+    /**
+     * Delete a batch of edges in one pass, the MC is incremented once for the whole batch
+     * (if anything changed).
+     * @param node1 - the first nodes of the edges
+     * @param node2 - the second nodes of the edges
+     */
+    @Override
+    public void removeEdges(int[] node1, int[] node2) {
+        writable();
+        if (node1.length != node2.length) throw new IllegalArgumentException("the batch arrays differ in length");
+        boolean changed = false;
+        for (int e = 0; e < node1.length; e++) {
+            NodeInfo nd1 = (NodeInfo) myWeightedGraph.get(node1[e]);
+            NodeInfo nd2 = (NodeInfo) myWeightedGraph.get(node2[e]);
+            if (nd1 == null || nd2 == null || !nd1.ni.containsKey(node2[e])) continue;
+            nd1.adjacency().remove(node2[e]);
+            nd2.adjacency().remove(node1[e]);
+            numOfEdges--;
+            changed = true;
+            if (connectivity != null) connectivity.removeEdge(node1[e], node2[e]);
         }
+        if (changed) MC++;
+        if (changed && log != null) log.removeEdges(node1, node2);
     }
     /** return the number of vertices (nodes) in the graph.
      * Note: this method should run in O(1) time.
@@ -205,6 +430,111 @@ public class WGraph_DS implements weighted_graph,java.io.Serializable {
         return MC;
     }
 
+    /**
+     * Return an immutable compressed sparse row (CSR) snapshot of this graph,
+     * later changes of this graph are not reflected in the snapshot.
+     * @return WGraph_CSR
+     */
+    public WGraph_CSR freeze() {
+        return new WGraph_CSR(this);
+    }
+
+    /**
+     * @return the coordinates of the nodes, null if none were attached.
+     */
+    public NodeCoordinates getCoordinates() {
+        return coordinates;
+    }
+    /**
+     * Attach the coordinates of the nodes to this graph (null to drop them),
+     * the coordinates of a removed node are removed as well.
+     * @param coordinates
+     */
+    public void setCoordinates(NodeCoordinates coordinates) {
+        writable();
+        this.coordinates = coordinates;
+    }
+
+    /**
+     * Append every mutation of this graph that changes it to the given write ahead log
+     * from now on (null to stop), see MutationLog. The log is not serialized (and not copied).
+     * Note: the mutations are durable only after log.commit().
+     * @param log
+     */
+    public void setLog(MutationLog log) {
+        writable();
+        this.log = log;
+    }
+    /**
+     * @return the write ahead log of this graph, null if none.
+     */
+    public MutationLog getLog() {
+        return log;
+    }
+
+    /**
+     * Keep the connected components of this graph up to date from now on,
+     * so isConnected() and the component queries are O(1) between mutations.
+     * Building the index is O(|V|+|E|), then addNode and connect stay O(1) (amortized),
+     * and removeEdge / removeNode cost about the size of the part that they may cut off.
+     * The index is not serialized (and not copied).
+     */
+    public void enableConnectivityIndex() {
+        if (connectivity == null) connectivity = new ConnectivityIndex(this);
+    }
+    /**
+     * Drop the connectivity index, the mutations are O(1) again.
+     */
+    public void disableConnectivityIndex() {
+        connectivity = null;
+    }
+    /**
+     * @return true iff the connectivity index is enabled.
+     */
+    public boolean hasConnectivityIndex() {
+        return connectivity != null;
+    }
+    /**
+     * Note: this method should run in O(1) time.
+     * @return the number of connected components.
+     * @throws IllegalStateException if the connectivity index is not enabled.
+     */
+    public int componentCount() {
+        return index().count();
+    }
+    /**
+     * Note: this method should run in O(1) time.
+     * @param node1
+     * @param node2
+     * @return true iff both nodes exist and there is a path between them.
+     * @throws IllegalStateException if the connectivity index is not enabled.
+     */
+    public boolean connected(int node1, int node2) {
+        return index().connected(node1, node2);
+    }
+    /**
+     * Note: this method should run in O(1) time.
+     * @param key
+     * @return the number of nodes in the component of the node, 0 if there is no such node.
+     * @throws IllegalStateException if the connectivity index is not enabled.
+     */
+    public int componentSize(int key) {
+        return index().componentSize(key);
+    }
+
+    private void writable() {
+        if (readOnly) throw new UnsupportedOperationException("the graph is a read only snapshot (version " + MC + ")");
+    }
+
+    private ConnectivityIndex index() {
+        if (connectivity == null) throw new IllegalStateException("the connectivity index is not enabled");
+        return connectivity;
+    }
+
+    private static boolean valid(int node1, int node2, double w) {
+        return node1 != node2 && w >= 0;
+    }
+
     public String toString(){ return String.valueOf(this.myWeightedGraph.values()); }
 
     public boolean equals(Object g) {
@@ -220,32 +550,85 @@ public class WGraph_DS implements weighted_graph,java.io.Serializable {
 
 
     /**
-     *
-     *
-     *
+     * A read only collection of the nodes whose keys are the keys of an adjacency map.
+     */
+    private class Neighbors extends AbstractCollection<node_info> {
+        private final IntDoubleMap ni;
+
+        Neighbors(IntDoubleMap ni) {
+            this.ni = ni;
+        }
+
+        @Override
+        public Iterator<node_info> iterator() {
+            return new Iterator<node_info>() {
+                private int slot = advance(0);
+
+                private int advance(int s) {
+                    while (s < ni.slots() && !ni.used(s)) s++;
+                    return s;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return slot < ni.slots();
+                }
+
+                @Override
+                public node_info next() {
+                    if (slot >= ni.slots()) throw new NoSuchElementException();
+                    node_info n = myWeightedGraph.get(ni.keyAt(slot));
+                    slot = advance(slot + 1);
+                    return n;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return ni.size();
+        }
+    }
+
+    /**
+     * A node of the graph, the adjacency (neighbor key -> edge weight)
+     * is a single primitive open addressing map.
      */
     private class NodeInfo implements node_info,java.io.Serializable {
         private int key_id;
         private double tag;
         private String info;
-        private HashMap<Integer, Double> weightOfEdges;
-        private HashMap<Integer, node_info> hashNi;
-        //copy constructor
-        public NodeInfo(NodeInfo node) {
+        private IntDoubleMap ni;
+        // ni is shared with a node of another graph (see copyOnWrite), copied before it is changed
+        private boolean shared;
+        //copy constructor, shares the adjacency of node if share
+        public NodeInfo(NodeInfo node, boolean share) {
             this.key_id = node.key_id;
             this.info = node.info;
             this.tag = node.tag;
-            this.hashNi = node.hashNi;
-            this.weightOfEdges = node.weightOfEdges;
+            if (share) {
+                this.ni = node.ni;
+                this.shared = node.shared = true;
+            }
+            else this.ni = new IntDoubleMap(node.ni);
         }
         //copy constructor by key
-        public NodeInfo(int key) {
+        public NodeInfo(int key, int expectedDegree) {
             setKey(key);
+            this.ni = new IntDoubleMap(expectedDegree);
         }
 
         public void setKey(int key) {
             this.key_id = key;
         }
+        // the adjacency, to be changed
+        private IntDoubleMap adjacency() {
+            if (shared) {
+                ni = new IntDoubleMap(ni);
+                shared = false;
+            }
+            return ni;
+        }
         /**
          * Return the key (id) associated with this node.
          * Note: each node_data should have a unique key.
@@ -0,0 +1,555 @@
+package ex1.src;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+/**
+ * This class reads and writes weighted graphs in compact versioned binary formats.
+ * The edge list format (save/load):
+ * header - magic "WGRF" (int), version (int), number of nodes (int), number of edges (int),
+ * nodes - the key of every node (int),
+ * edges - every undirected edge once, as (int node1, int node2, double weight) with node1 < node2.
+ * The CSR format (saveCSR/map) - the arrays of WGraph_CSR as they are, so it can be memory mapped:
+ * header - magic "WGCS" (int), version (int), number of nodes n (int), number of directed edges 2|E| (int),
+ * keys (n ints), offsets (n+1 ints), neighbors (2|E| ints), padding to 8 bytes, weights (2|E| doubles).
+ * The compressed format (saveCompressed/loadCompressed/openCompressed) - varint gap encoded neighbor lists,
+ * dictionary or quantized weights and deflated blocks of nodes, see CompressedGraph.
+ * All the values are big endian, the files are written and read through a FileChannel
+ * with a direct buffer.
+ * The text edge list format (importEdgeList/exportEdgeList) - a line per edge "node1 node2 weight"
+ * (separated by spaces, tabs or commas), a line with a single key is a node without edges,
+ * empty lines and lines that start with '#' are ignored.
+ * Note: the node meta data (tag, info) is not saved.
+ */
+public class WGraph_IO {
+    static final int MAGIC = 0x57475246; // "WGRF"
+    static final int CSR_MAGIC = 0x57474353; // "WGCS"
+    static final int VERSION = 1;
+    private static final int HEADER = 16;
+    private static final int COUNTS = 8; // the position of the counts in the header
+    private static final int BUFFER = 1 << 16;
+    private static final int BATCH = 1 << 14; // edges per batch of importEdgeList
+    private static final double[] POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private WGraph_IO() {
+    }
+    /**
+     * Saves the graph to the given file name in the binary format.
+     * @param g - the graph
+     * @param file - the file name (may include a relative path).
+     * @throws IOException
+     */
+    public static void save(weighted_graph g, String file) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(g, ch);
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void write(weighted_graph g, FileChannel ch) throws IOException {
+        Out out = new Out(ch);
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putInt(0);
+        out.putInt(0);
+        int nodes = 0;
+        for (node_info n : g.getV()) {
+            out.putInt(n.getKey());
+            nodes++;
+        }
+        int[] edges = new int[1];
+        for (node_info n : g.getV()) {
+            int key = n.getKey();
+            g.forEachNeighbor(key, (ni, w) -> {
+                if (key < ni) {
+                    out.putInt(key);
+                    out.putInt(ni);
+                    out.putDouble(w);
+                    edges[0]++;
+                }
+            });
+        }
+        out.flush();
+        // the counts are known only at the end (the graph may change while it is saved)
+        ByteBuffer counts = ByteBuffer.allocate(8);
+        counts.putInt(nodes).putInt(edges[0]).flip();
+        while (counts.hasRemaining()) ch.write(counts, COUNTS + counts.position());
+    }
+    /**
+     * Load a graph that was saved in the binary format.
+     * The nodes and the edges are read to arrays first, and the edges are applied as one
+     * batch (see WGraph_DS.connectAll), so the adjacency of every node is allocated once with its final size.
+     * Every record is checked first: the node keys are unique, and every edge is of two different
+     * existing nodes with a finite, non negative weight and appears once.
+     * @param file - file name
+     * @return the loaded graph
+     * @throws IOException - if the file can not be read or is not in the binary format
+     */
+    public static WGraph_DS load(String file) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            In in = new In(ch);
+            if (in.getInt() != MAGIC) throw new IOException(file + " is not a binary graph file");
+            int version = in.getInt();
+            if (version != VERSION) throw new IOException("unsupported graph file version " + version);
+            int n = in.getInt();
+            int m = in.getInt();
+            if (n < 0 || m < 0 || HEADER + 4L * n + 16L * m > ch.size())
+                throw new IOException(file + " has bad counts (" + n + " nodes, " + m + " edges) or is truncated");
+            int[] keys = new int[n];
+            for (int i = 0; i < n; i++) keys[i] = in.getInt();
+            int[] sorted = keys.clone();
+            Arrays.sort(sorted);
+            for (int i = 1; i < n; i++) {
+                if (sorted[i] == sorted[i - 1]) throw new IOException(file + " has the node " + sorted[i] + " twice");
+            }
+            int[] src = new int[m];
+            int[] dst = new int[m];
+            double[] w = new double[m];
+            for (int e = 0; e < m; e++) {
+                int a = src[e] = in.getInt();
+                int b = dst[e] = in.getInt();
+                double x = w[e] = in.getDouble();
+                if (Arrays.binarySearch(sorted, a) < 0 || Arrays.binarySearch(sorted, b) < 0)
+                    throw new IOException(file + " has the edge " + a + "-" + b + " of a missing node");
+                if (a == b) throw new IOException(file + " has a self loop at the node " + a);
+                if (!(x >= 0) || x == Double.POSITIVE_INFINITY)
+                    throw new IOException(file + " has the bad weight " + x + " on the edge " + a + "-" + b);
+            }
+            WGraph_DS g = new WGraph_DS(n);
+            g.connectAll(src, dst, w);
+            for (int i = 0; i < n; i++) g.addNode(keys[i]);
+            if (g.edgeSize() != m) throw new IOException(file + " has " + (m - g.edgeSize()) + " duplicate edges");
+            return g;
+        }
+    }
+    /**
+     * Saves the graph to the given file name in the CSR format (that can be memory mapped).
+     * @param g - the graph
+     * @param file - the file name (may include a relative path).
+     * @throws IOException
+     */
+    public static void saveCSR(weighted_graph g, String file) throws IOException {
+        WGraph_CSR csr = g instanceof WGraph_CSR ? (WGraph_CSR) g : new WGraph_CSR(g);
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            IntBuffer[] ints = csr.intBuffers();
+            DoubleBuffer weights = csr.weightBuffer();
+            Out out = new Out(ch);
+            out.putInt(CSR_MAGIC);
+            out.putInt(VERSION);
+            out.putInt(ints[0].limit());
+            out.putInt(ints[2].limit());
+            long bytes = HEADER;
+            for (IntBuffer b : ints) {
+                while (b.hasRemaining()) out.putInt(b.get());
+                bytes += 4L * b.limit();
+            }
+            if (bytes % 8 != 0) out.putInt(0);
+            while (weights.hasRemaining()) out.putDouble(weights.get());
+            out.flush();
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    /**
+     * Memory map a graph file in the CSR format.
+     * The returned graph reads the file through the OS page cache - it is not copied to the heap,
+     * and processes that map the same file share its memory. The header, the keys (ascending)
+     * and the offsets (ascending, from 0 to the number of the directed edges) are checked,
+     * so it is ready in O(|V|) time, independent of the number of the edges.
+     * Note: the graph is read only, and the file should not be changed while it is mapped.
+     * @param file - file name
+     * @return the mapped graph
+     * @throws IOException - if the file can not be read or is not in the CSR format
+     */
+    public static WGraph_CSR map(String file) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            if (ch.size() < HEADER) throw new IOException(file + " is not a CSR graph file");
+            ByteBuffer header = ch.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+            if (header.getInt(0) != CSR_MAGIC) throw new IOException(file + " is not a CSR graph file");
+            int version = header.getInt(4);
+            if (version != VERSION) throw new IOException("unsupported graph file version " + version);
+            int n = header.getInt(8);
+            int m2 = header.getInt(12);
+            // a mapped region is at most 2GB
+            if (n < 0 || m2 < 0 || m2 % 2 != 0 || 8L * m2 > Integer.MAX_VALUE || 4L * (n + 1) > Integer.MAX_VALUE)
+                throw new IOException(file + " has bad counts (" + n + " nodes, " + m2 + " directed edges)");
+            long keys = HEADER;
+            long offsets = keys + 4L * n;
+            long neighbors = offsets + 4L * (n + 1);
+            long weights = neighbors + 4L * m2;
+            if (weights % 8 != 0) weights += 4;
+            if (ch.size() < weights + 8L * m2) throw new IOException(file + " is truncated");
+            IntBuffer keyBuffer = ch.map(FileChannel.MapMode.READ_ONLY, keys, 4L * n).asIntBuffer();
+            IntBuffer offsetBuffer = ch.map(FileChannel.MapMode.READ_ONLY, offsets, 4L * (n + 1)).asIntBuffer();
+            for (int i = 1; i < n; i++) {
+                if (keyBuffer.get(i - 1) >= keyBuffer.get(i)) throw new IOException(file + " has keys out of order at " + i);
+            }
+            if (offsetBuffer.get(0) != 0 || offsetBuffer.get(n) != m2) throw new IOException(file + " has bad offsets");
+            for (int i = 0; i < n; i++) {
+                if (offsetBuffer.get(i) > offsetBuffer.get(i + 1)) throw new IOException(file + " has bad offsets at " + i);
+            }
+            return new WGraph_MappedCSR(keyBuffer, offsetBuffer,
+                    ch.map(FileChannel.MapMode.READ_ONLY, neighbors, 4L * m2).asIntBuffer(),
+                    ch.map(FileChannel.MapMode.READ_ONLY, weights, 8L * m2).asDoubleBuffer(),
+                    0);
+        }
+    }
+    /**
+     * Saves the graph to the given file name in the compressed format, with the exact weights.
+     * @param g - the graph
+     * @param file - the file name (may include a relative path).
+     * @throws IOException
+     */
+    public static void saveCompressed(weighted_graph g, String file) throws IOException {
+        CompressedGraph.save(g, file, CompressedGraph.Weights.EXACT, 0);
+    }
+    /**
+     * Saves the graph to the given file name in the compressed format,
+     * with the weights rounded by the given coding (FLOAT - to floats, FIXED - to multiples of step).
+     * @param g - the graph
+     * @param file - the file name (may include a relative path).
+     * @param coding - the coding of the weights
+     * @param step - the step of FIXED (> 0), ignored by the other codings
+     * @throws IOException
+     */
+    public static void saveCompressed(weighted_graph g, String file, CompressedGraph.Weights coding, double step) throws IOException {
+        CompressedGraph.save(g, file, coding, step);
+    }
+    /**
+     * Load a graph that was saved in the compressed format (all the blocks are decoded).
+     * @param file - file name
+     * @return the loaded graph
+     * @throws IOException - if the file can not be read or is not in the compressed format
+     */
+    public static WGraph_DS loadCompressed(String file) throws IOException {
+        try (CompressedGraph cg = CompressedGraph.open(file)) {
+            return cg.toGraph();
+        }
+    }
+    /**
+     * Memory map a graph file in the compressed format for random access:
+     * the neighborhood of a node is decoded from its block only (see CompressedGraph),
+     * the caller closes it.
+     * @param file - file name
+     * @return the graph file
+     * @throws IOException - if the file can not be read or is not in the compressed format
+     */
+    public static CompressedGraph openCompressed(String file) throws IOException {
+        return CompressedGraph.open(file);
+    }
+    /**
+     * Stream a text edge list into the graph (the nodes are added as needed, an edge that
+     * already exists is updated). The file is parsed straight from a byte buffer and the
+     * edges are applied in batches, so the memory does not depend on the size of the file.
+     * @param file - file name
+     * @param g - the graph to add the nodes and the edges to
+     * @param progress - called with the number of lines read so far after every batch (may be null)
+     * @return the number of lines read
+     * @throws IOException - if the file can not be read, or on a malformed line
+     */
+    public static long importEdgeList(String file, weighted_graph g, LongConsumer progress) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            In in = new In(ch);
+            char[] token = new char[128];
+            int[] src = new int[BATCH];
+            int[] dst = new int[BATCH];
+            double[] w = new double[BATCH];
+            int size = 0;
+            long line = 0;
+            int c = in.getByte();
+            while (c >= 0) {
+                line++;
+                c = skipBlanks(in, c);
+                if (c == '#') {
+                    while (c >= 0 && c != '\n') c = in.getByte();
+                }
+                else if (!isEndOfLine(c)) {
+                    int node1 = parseInt(in, c, line);
+                    c = skipBlanks(in, in.getByte());
+                    if (isEndOfLine(c)) g.addNode(node1);
+                    else {
+                        src[size] = node1;
+                        dst[size] = parseInt(in, c, line);
+                        c = skipBlanks(in, in.getByte());
+                        if (isEndOfLine(c)) throw new IOException("line " + line + ": missing weight");
+                        w[size] = parseDouble(in, c, token, line);
+                        c = skipBlanks(in, in.getByte());
+                        if (++size == BATCH) {
+                            connect(g, src, dst, w, size);
+                            size = 0;
+                            if (progress != null) progress.accept(line);
+                        }
+                    }
+                }
+                if (c == '\r') c = in.getByte();
+                if (c >= 0 && c != '\n') throw new IOException("line " + line + ": unexpected '" + (char) c + "'");
+                c = in.getByte();
+            }
+            connect(g, src, dst, w, size);
+            if (progress != null) progress.accept(line);
+            return line;
+        }
+    }
+    /**
+     * Stream the graph to a text edge list: every undirected edge once (node1 < node2),
+     * and every node without edges as a single key.
+     * The lines are formatted straight into a byte buffer, no collection is built.
+     * @param g - the graph
+     * @param file - the file name (may include a relative path).
+     * @throws IOException
+     */
+    public static void exportEdgeList(weighted_graph g, String file) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Out out = new Out(ch);
+            boolean[] hasEdges = new boolean[1];
+            for (node_info n : g.getV()) {
+                int key = n.getKey();
+                hasEdges[0] = false;
+                g.forEachNeighbor(key, (ni, w) -> {
+                    hasEdges[0] = true;
+                    if (key < ni) {
+                        out.putDecimal(key);
+                        out.putByte(' ');
+                        out.putDecimal(ni);
+                        out.putByte(' ');
+                        out.putAscii(Double.toString(w));
+                        out.putByte('\n');
+                    }
+                });
+                if (!hasEdges[0]) {
+                    out.putDecimal(key);
+                    out.putByte('\n');
+                }
+            }
+            out.flush();
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void connect(weighted_graph g, int[] src, int[] dst, double[] w, int size) {
+        if (size == src.length) g.connectAll(src, dst, w);
+        else g.connectAll(Arrays.copyOf(src, size), Arrays.copyOf(dst, size), Arrays.copyOf(w, size));
+    }
+
+    private static int skipBlanks(In in, int c) throws IOException {
+        while (c == ' ' || c == '\t' || c == ',') c = in.getByte();
+        return c;
+    }
+
+    private static boolean isEndOfLine(int c) {
+        return c < 0 || c == '\n' || c == '\r';
+    }
+
+    private static boolean isDelimiter(int c) {
+        return c == ' ' || c == '\t' || c == ',' || isEndOfLine(c);
+    }
+
+    // parse the int that starts with c, the delimiter after it is pushed back
+    private static int parseInt(In in, int c, long line) throws IOException {
+        boolean negative = c == '-';
+        if (negative || c == '+') c = in.getByte();
+        if (c < '0' || c > '9') throw new IOException("line " + line + ": bad node key");
+        long v = 0;
+        for (; c >= '0' && c <= '9'; c = in.getByte()) {
+            v = v * 10 + (c - '0');
+            if (v > Integer.MAX_VALUE + 1L) throw new IOException("line " + line + ": node key out of range");
+        }
+        if (!isDelimiter(c)) throw new IOException("line " + line + ": bad node key");
+        in.unread();
+        v = negative ? -v : v;
+        if (v > Integer.MAX_VALUE) throw new IOException("line " + line + ": node key out of range");
+        return (int) v;
+    }
+
+    // parse the double that starts with c, the delimiter after it is pushed back
+    private static double parseDouble(In in, int c, char[] token, long line) throws IOException {
+        int len = 0;
+        for (; !isDelimiter(c); c = in.getByte()) {
+            if (len == token.length) throw new IOException("line " + line + ": bad weight");
+            token[len++] = (char) c;
+        }
+        in.unread();
+        // a plain decimal with up to 15 significant digits: mantissa and 10^scale are exact doubles,
+        // so a single division gives the correctly rounded value (as Double.parseDouble)
+        int i = 0;
+        boolean negative = token[0] == '-';
+        if (negative || token[0] == '+') i++;
+        long mantissa = 0;
+        int digits = 0, scale = 0;
+        boolean dot = false, anyDigit = false, simple = true;
+        for (; i < len && simple; i++) {
+            char ch = token[i];
+            if (ch >= '0' && ch <= '9') {
+                mantissa = mantissa * 10 + (ch - '0');
+                if (mantissa != 0) digits++;
+                if (dot) scale++;
+                anyDigit = true;
+            }
+            else if (ch == '.' && !dot) dot = true;
+            else simple = false;
+        }
+        if (simple && anyDigit && digits <= 15 && scale < POW10.length) {
+            double v = mantissa / POW10[scale];
+            return negative ? -v : v;
+        }
+        try {
+            return Double.parseDouble(new String(token, 0, len));
+        }
+        catch (NumberFormatException e) {
+            throw new IOException("line " + line + ": bad weight");
+        }
+    }
+    /**
+     * @param file - file name
+     * @return the magic number the file starts with (0 if none).
+     */
+    static int magic(String file) {
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            ByteBuffer b = ByteBuffer.allocate(4);
+            while (b.hasRemaining() && ch.read(b) >= 0) ;
+            return b.hasRemaining() ? 0 : b.getInt(0);
+        }
+        catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * A buffered writer of primitives to a channel.
+     */
+    static class Out {
+        private final FileChannel ch;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER);
+
+        Out(FileChannel ch) {
+            this.ch = ch;
+        }
+
+        void putInt(int v) {
+            ensure(4);
+            buf.putInt(v);
+        }
+
+        void putDouble(double v) {
+            ensure(8);
+            buf.putDouble(v);
+        }
+
+        void putByte(char c) {
+            ensure(1);
+            buf.put((byte) c);
+        }
+
+        void putAscii(String s) {
+            for (int i = 0; i < s.length(); i++) putByte(s.charAt(i));
+        }
+
+        void putDecimal(int v) {
+            ensure(11);
+            long x = v;
+            if (x < 0) {
+                buf.put((byte) '-');
+                x = -x;
+            }
+            int start = buf.position();
+            do {
+                buf.put((byte) ('0' + x % 10));
+                x /= 10;
+            } while (x > 0);
+            // the digits were written in reverse
+            for (int i = start, j = buf.position() - 1; i < j; i++, j--) {
+                byte t = buf.get(i);
+                buf.put(i, buf.get(j));
+                buf.put(j, t);
+            }
+        }
+
+        void flush() {
+            buf.flip();
+            try {
+                while (buf.hasRemaining()) ch.write(buf);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            buf.clear();
+        }
+
+        private void ensure(int bytes) {
+            if (buf.remaining() < bytes) flush();
+        }
+    }
+
+    /**
+     * A buffered reader of primitives from a channel.
+     */
+    static class In {
+        private final FileChannel ch;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER);
+        private boolean eof;
+
+        In(FileChannel ch) {
+            this.ch = ch;
+            buf.flip();
+        }
+
+        int getInt() throws IOException {
+            ensure(4);
+            return buf.getInt();
+        }
+
+        double getDouble() throws IOException {
+            ensure(8);
+            return buf.getDouble();
+        }
+        /**
+         * @return the next byte (0..255), -1 at the end of the file.
+         */
+        int getByte() throws IOException {
+            if (!buf.hasRemaining()) {
+                buf.clear();
+                int r;
+                do r = ch.read(buf); while (r == 0);
+                buf.flip();
+                if (r < 0) {
+                    eof = true;
+                    return -1;
+                }
+            }
+            eof = false;
+            return buf.get() & 0xff;
+        }
+        /**
+         * Push back the byte that the last getByte() returned (no action after the end of the file).
+         */
+        void unread() {
+            if (!eof) buf.position(buf.position() - 1);
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buf.remaining() >= bytes) return;
+            buf.compact();
+            while (buf.position() < bytes) {
+                if (ch.read(buf) < 0) throw new EOFException();
+            }
+            buf.flip();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package ex1.src;
+
+import java.io.ObjectStreamException;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+/**
+ * This class represents a WGraph_CSR whose arrays are views of a memory mapped file
+ * (see WGraph_IO.map), so the graph is not copied to the heap.
+ * The heap snapshots keep plain arrays, so the searches on them do not go through buffers,
+ * only the searches on a mapped file do.
+ * getNode/indexOf are binary searches over the mapped keys - O(log(n)) (O(1) if the keys are a range).
+ * A mapped graph is serialized as a heap snapshot.
+ */
+final class WGraph_MappedCSR extends WGraph_CSR {
+    private final transient IntBuffer keys;
+    private final transient IntBuffer offsets;
+    private final transient IntBuffer neighbors;
+    private final transient DoubleBuffer weights;
+    // true if the keys are a range (keys[i] == keys[0] + i), then no search is needed
+    private final transient boolean dense;
+
+    /**
+     * A CSR graph over the given buffers, the buffers are not copied.
+     * @param keys - the sorted keys of the n nodes
+     * @param offsets - n+1 row offsets
+     * @param neighbors - the rows (sorted node indexes)
+     * @param weights - the weights of the edges of the rows
+     * @param MC - the mode count of the graph
+     */
+    WGraph_MappedCSR(IntBuffer keys, IntBuffer offsets, IntBuffer neighbors, DoubleBuffer weights, int MC) {
+        super(keys.limit(), neighbors.limit() / 2, MC);
+        this.keys = keys;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+        this.weights = weights;
+        int n = keys.limit();
+        this.dense = n > 0 && (long) keys.get(n - 1) - keys.get(0) == n - 1;
+    }
+
+    @Override
+    int indexOf(int key) {
+        if (dense) {
+            long i = (long) key - keys.get(0);
+            return i >= 0 && i < nodeSize() ? (int) i : -1;
+        }
+        return binarySearch(keys, 0, nodeSize(), key);
+    }
+
+    @Override
+    int keyAt(int i) {
+        return keys.get(i);
+    }
+
+    @Override
+    int begin(int i) {
+        return offsets.get(i);
+    }
+
+    @Override
+    int end(int i) {
+        return offsets.get(i + 1);
+    }
+
+    @Override
+    int neighborAt(int e) {
+        return neighbors.get(e);
+    }
+
+    @Override
+    double weightAt(int e) {
+        return weights.get(e);
+    }
+
+    @Override
+    IntBuffer[] intBuffers() {
+        return new IntBuffer[]{keys.duplicate(), offsets.duplicate(), neighbors.duplicate()};
+    }
+
+    @Override
+    DoubleBuffer weightBuffer() {
+        return weights.duplicate();
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        return onHeap();
+    }
+}
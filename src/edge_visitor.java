@@ -0,0 +1,14 @@
+package ex1.src;
+
+/**
+ * This interface represents a callback over the edges of a node,
+ * see weighted_graph.forEachNeighbor(int, edge_visitor).
+ */
+public interface edge_visitor {
+    /**
+     * Called once for every edge (node_id, ni) of the visited node.
+     * @param ni - the key of the neighbor
+     * @param w - the weight of the edge
+     */
+    public void visit(int ni, double w);
+}
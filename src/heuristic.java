@@ -0,0 +1,17 @@
+package ex1.src;
+
+/**
+ * This interface represents an estimate of the distance between two nodes,
+ * for the A* searches of weighted_graph_algorithms (shortestPath(src, dest, h)).
+ * The estimate must be admissible: never more than the length of the shortest path
+ * (0 is always admissible, and makes A* a plain Dijkstra).
+ * See NodeCoordinates.euclidean() and NodeCoordinates.haversine().
+ */
+public interface heuristic {
+    /**
+     * @param node - the key of a node
+     * @param dest - the key of the target node
+     * @return a lower bound of the shortest path distance between node and dest.
+     */
+    public double estimate(int node, int dest);
+}
@@ -62,6 +62,15 @@ public interface weighted_graph {
      * @return Collection<node_data>
      */
     public Collection<node_info> getV(int node_id);
+    /**
+     * Visit all the edges of node_id in one pass:
+     * for every neighbor ni of node_id, call visitor.visit(ni, w(node_id,ni)).
+     * Note: this method can run in O(k) time, k - being the degree of node_id,
+     * and does not look up the weights separately.
+     * @param node_id
+     * @param visitor
+     */
+    public void forEachNeighbor(int node_id, edge_visitor visitor);
     /**
      * Delete the node (with the given ID) from the graph -
      * and removes all edges which starts or ends at this node.
@@ -77,6 +86,23 @@ public interface weighted_graph {
      * @param node2
      */
     public void removeEdge(int node1, int node2);
+    /**
+     * Apply a batch of edges: for every e, add the nodes src[e] and dst[e] (if missing)
+     * and connect the edge src[e]-dst[e] with the weight w[e], as addNode and connect do
+     * (a later edge of the batch wins over an earlier one with the same nodes).
+     * The MC is incremented once for the whole batch (if anything changed).
+     * @param src - the first nodes of the edges
+     * @param dst - the second nodes of the edges
+     * @param w - the weights of the edges
+     */
+    public void connectAll(int[] src, int[] dst, double[] w);
+    /**
+     * Delete a batch of edges: for every e, the edge node1[e]-node2[e] (if there is one).
+     * The MC is incremented once for the whole batch (if anything changed).
+     * @param node1 - the first nodes of the edges
+     * @param node2 - the second nodes of the edges
+     */
+    public void removeEdges(int[] node1, int[] node2);
     /** return the number of vertices (nodes) in the graph.
      * Note: this method should run in O(1) time.
      * @return
@@ -57,6 +57,29 @@ public interface weighted_graph_algorithms {
      * @return
      */
     public List<node_info> shortestPath(int src, int dest);
+    /**
+     * returns the length of the shortest path between src to dest, by an A* search
+     * that is guided by the estimate h of the distance to dest (and explores fewer nodes
+     * the better h is), see NodeCoordinates for the euclidean and haversine heuristics.
+     * Note: h must be admissible (never more than the real distance), else the result may be too long.
+     * Note: if no such path --> returns -1
+     * @param src - start node
+     * @param dest - end (target) node
+     * @param h - the heuristic
+     * @return
+     */
+    public double shortestPathDist(int src, int dest, heuristic h);
+    /**
+     * returns the the shortest path between src to dest - as an ordered List of nodes,
+     * by an A* search that is guided by the estimate h of the distance to dest.
+     * Note: h must be admissible (never more than the real distance), else the path may be too long.
+     * Note if no such path --> returns null;
+     * @param src - start node
+     * @param dest - end (target) node
+     * @param h - the heuristic
+     * @return
+     */
+    public List<node_info> shortestPath(int src, int dest, heuristic h);
 
     /**
      * Saves this weighted (undirected) graph to the given
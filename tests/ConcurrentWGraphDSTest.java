@@ -0,0 +1,179 @@
+package ex1.tests;
+
+import ex1.src.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentWGraphDSTest {
+    @Test
+    void sameAsWGraph_DS() {
+        weighted_graph g = new ConcurrentWGraph_DS();
+        for (int i = 0; i < 5; i++) {
+            g.addNode(i);
+        }
+        g.addNode(3);//same
+        g.connect(0, 1, 0.5);
+        g.connect(1, 2, 0.5);
+        g.connect(1, 3, 0.5);
+        g.connect(2, 3, 0.5);
+        g.connect(3, 4, 0.5);
+        g.connect(3, 3, 0.5);//self loop
+        assertEquals(5, g.nodeSize());
+        assertEquals(5, g.edgeSize());
+        assertEquals(10, g.getMC());
+        assertTrue(g.hasEdge(3, 2));
+        assertEquals(0.5, g.getEdge(1, 3));
+        assertEquals(0, g.getEdge(4, 4));
+        assertEquals(-1, g.getEdge(0, 4));
+        g.connect(1, 3, 0.5);//same
+        assertEquals(10, g.getMC());
+        g.removeNode(1);
+        assertEquals(14, g.getMC());
+        assertEquals(4, g.nodeSize());
+        assertEquals(2, g.edgeSize());
+        assertFalse(g.hasEdge(0, 1));
+        assertNull(g.getNode(1));
+        assertEquals(2, g.getV(3).size());
+    }
+
+    @Test
+    void parallelMutations() throws InterruptedException {
+        ConcurrentWGraph_DS g = new ConcurrentWGraph_DS();
+        for (int i = 0; i < 200; i++) g.addNode(i);
+        Thread[] threads = new Thread[8];
+        for (int k = 0; k < threads.length; k++) {
+            final int seed = k;
+            threads[k] = new Thread(() -> {
+                Random r = new Random(seed);
+                for (int i = 0; i < 20000; i++) {
+                    int a = r.nextInt(200), b = r.nextInt(200);
+                    int op = r.nextInt(10);
+                    if (op < 6) g.connect(a, b, r.nextDouble());
+                    else if (op < 9) g.removeEdge(a, b);
+                    else {
+                        g.removeNode(a);
+                        g.addNode(a);
+                    }
+                }
+            });
+            threads[k].start();
+        }
+        for (Thread t : threads) t.join();
+        int degrees = 0;
+        for (node_info n : g.getV()) {
+            for (node_info ni : g.getV(n.getKey())) {
+                assertTrue(g.hasEdge(ni.getKey(), n.getKey()));
+                assertEquals(g.getEdge(n.getKey(), ni.getKey()), g.getEdge(ni.getKey(), n.getKey()));
+                degrees++;
+            }
+        }
+        assertEquals(200, g.nodeSize());
+        assertEquals(degrees, 2 * g.edgeSize());
+    }
+
+    @Test
+    void queriesWhileWriting() throws InterruptedException {
+        ConcurrentWGraph_DS g = new ConcurrentWGraph_DS();
+        for (int i = 0; i < 100; i++) g.addNode(i);
+        for (int i = 1; i < 100; i++) g.connect(i - 1, i, 1);
+        WGraph_Algo ag = new WGraph_Algo(g);
+        Thread writer = new Thread(() -> {
+            Random r = new Random(1);
+            for (int i = 0; i < 20000; i++) {
+                int a = 100 + r.nextInt(100);
+                g.addNode(a);
+                g.connect(a, r.nextInt(100), 1000);
+                if (r.nextBoolean()) g.removeNode(a);
+            }
+        });
+        writer.start();
+        for (int i = 0; i < 200; i++) {
+            //the path 0..99 is never changed by the writer, and it adds no shortcuts
+            assertEquals(99, ag.shortestPathDist(0, 99));
+        }
+        writer.join();
+    }
+
+    @Test
+    void versionedGraph() throws InterruptedException {
+        WGraph_DS g = new WGraph_DS();
+        for (int i = 0; i < 200; i++) g.addNode(i);
+        VersionedGraph vg = new VersionedGraph(g);
+        WGraph_DS first = vg.read();
+        assertSame(first, vg.read());//no change, the same version
+        Thread writer = new Thread(() -> {
+            Random r = new Random(1);
+            for (int i = 0; i < 20000; i++) {
+                int a = r.nextInt(200), b = r.nextInt(200);
+                double w = r.nextDouble();
+                // every update keeps the edges of node a in pairs: a-b and a-(b+1)%200 with the same weight
+                vg.update(x -> {
+                    if (r.nextInt(3) == 0) {
+                        x.removeEdges(new int[]{a, a}, new int[]{b, (b + 1) % 200});
+                    }
+                    else x.connectAll(new int[]{a, a}, new int[]{b, (b + 1) % 200}, new double[]{w, w});
+                });
+            }
+        });
+        writer.start();
+        int versions = 0, last = -1;
+        while (writer.isAlive() || versions == 0) {
+            WGraph_DS v = vg.read();
+            if (v.getMC() == last) continue;
+            last = v.getMC();
+            versions++;
+            int degrees = 0;
+            for (node_info n : v.getV()) {
+                for (node_info ni : v.getV(n.getKey())) {
+                    assertEquals(v.getEdge(n.getKey(), ni.getKey()), v.getEdge(ni.getKey(), n.getKey()));
+                    degrees++;
+                }
+            }
+            assertEquals(degrees, 2 * v.edgeSize());
+            WGraph_Algo ag = new WGraph_Algo(v);
+            ag.shortestPathDist(0, 199);
+            assertEquals(last, v.getMC());//the version did not change under the reader
+        }
+        writer.join();
+        assertEquals(g.getMC(), vg.getVersion());
+        assertEquals(g, vg.read());
+        assertEquals(0, first.edgeSize());
+        assertTrue(versions >= 1);
+    }
+
+    @Test
+    void versionedGraphReadDuringUpdate() throws InterruptedException {
+        WGraph_DS g = new WGraph_DS();
+        for (int i = 0; i < 10; i++) g.addNode(i);
+        VersionedGraph vg = new VersionedGraph(g);
+        WGraph_DS before = vg.read();
+        CountDownLatch inside = new CountDownLatch(1), done = new CountDownLatch(1);
+        Thread writer = new Thread(() -> vg.update(x -> {
+            x.connect(0, 1, 1);
+            inside.countDown();
+            try {
+                done.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        writer.start();
+        inside.await();
+        // the writer holds the lock in the middle of its update, the readers get the last version
+        assertSame(before, vg.read());
+        assertEquals(before.getMC(), vg.getVersion());
+        done.countDown();
+        writer.join();
+        assertEquals(1, vg.read().edgeSize());
+        assertEquals(g.getMC(), vg.getVersion());
+        assertEquals(0, before.edgeSize());
+        vg.update(x -> x.connect(0, 1, 1));//no change, no new version
+        assertEquals(g.getMC(), vg.read().getMC());
+    }
+}
+
@@ -5,10 +5,14 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -32,6 +36,44 @@ public class WGraphAlgoTest {
         assertTrue(ag.isConnected());
     }
 
+    @Test
+    void connectedComponents() {
+        weighted_graph g = WGraphDSTest.smallGraphCreator();//0..4 connected
+        for (int i = 10; i < 15; i++) g.addNode(i);
+        g.connect(10, 11, 1);
+        g.connect(12, 11, 1);
+        g.connect(13, 14, 1);
+        WGraph_Algo ag = new WGraph_Algo(g);
+        assertFalse(ag.isConnected());
+        ConnectedComponents cc = ag.connectedComponents();
+        assertEquals(3, cc.count());
+        assertArrayEquals(new int[]{5, 3, 2}, cc.sizes());
+        assertTrue(cc.connected(0, 4));
+        assertTrue(cc.connected(10, 12));
+        assertFalse(cc.connected(4, 14));
+        assertEquals(-1, cc.componentOf(99));
+        g.connect(4, 10, 1);
+        g.connect(4, 13, 1);
+        assertTrue(ag.isConnected());
+        assertEquals(1, ag.connectedComponents().count());
+        assertTrue(new WGraph_Algo(new WGraph_DS()).isConnected());
+        assertEquals(0, new WGraph_Algo(new WGraph_DS()).connectedComponents().count());
+        //sparse keys: the BFS over the graph and the BFS over a cached snapshot agree
+        weighted_graph sparse = new WGraph_DS();
+        Random r = new Random(4);
+        for (int i = 0; i < 300; i++) sparse.addNode(i * 37 - 5000);
+        for (int i = 0; i < 200; i++) sparse.connect(r.nextInt(300) * 37 - 5000, r.nextInt(300) * 37 - 5000, 1);
+        WGraph_Algo sa = new WGraph_Algo(sparse);
+        ConnectedComponents byKeys = sa.connectedComponents();
+        boolean connected = sa.isConnected();
+        sa.shortestPathDist(-5000, 37 - 5000);//caches the snapshot
+        ConnectedComponents bySnapshot = sa.connectedComponents();
+        assertEquals(connected, sa.isConnected());
+        assertArrayEquals(bySnapshot.sizes(), byKeys.sizes());
+        for (int i = 0; i < 300; i++) assertEquals(bySnapshot.componentOf(i * 37 - 5000), byKeys.componentOf(i * 37 - 5000));
+        assertEquals(-1, byKeys.componentOf(1));
+    }
+
     @Test
     void shortestPathDist() {
         weighted_graph g0 = smallGraphCreator();
@@ -56,6 +98,468 @@ public class WGraphAlgoTest {
         }
     }
 
+    @Test
+    void shortestPathDistRandom() {
+        weighted_graph g = WGraphDSTest.graphCreator(200,1000,3);
+        weighted_graph_algorithms ag = new WGraph_Algo();
+        ag.init(g);
+        double[][] d = floydWarshall(g, 200);
+        for (int src = 0; src < 200; src+=17) {
+            for (int dest = 0; dest < 200; dest++) {
+                double expected = d[src][dest]==Double.POSITIVE_INFINITY ? -1 : d[src][dest];
+                assertEquals(expected, ag.shortestPathDist(src,dest), 0.000001);
+            }
+        }
+    }
+
+    @Test
+    void bidirectional() {
+        for (int edges : new int[]{150, 1000}) {//not connected and connected
+            weighted_graph g = WGraphDSTest.graphCreator(200, edges, 5);
+            WGraph_Algo ag = new WGraph_Algo(g);
+            assertEquals(WGraph_Algo.Search.DIJKSTRA, ag.getSearch());
+            ag.setSearch(WGraph_Algo.Search.BIDIRECTIONAL);
+            double[][] d = floydWarshall(g, 200);
+            for (int src = 0; src < 200; src += 13) {
+                for (int dest = 0; dest < 200; dest++) {
+                    double expected = d[src][dest] == Double.POSITIVE_INFINITY ? -1 : d[src][dest];
+                    assertEquals(expected, ag.shortestPathDist(src, dest), 0.000001);
+                    List<node_info> path = ag.shortestPath(src, dest);
+                    if (expected == -1) {
+                        assertNull(path);
+                        continue;
+                    }
+                    assertEquals(src, path.get(0).getKey());
+                    assertEquals(dest, path.get(path.size() - 1).getKey());
+                    double length = 0;
+                    for (int i = 1; i < path.size(); i++) {
+                        assertTrue(g.hasEdge(path.get(i - 1).getKey(), path.get(i).getKey()));
+                        length += g.getEdge(path.get(i - 1).getKey(), path.get(i).getKey());
+                    }
+                    assertEquals(expected, length, 0.000001);
+                }
+            }
+        }
+    }
+
+    @Test
+    void astar() {
+        //a grid with random coordinates, every weight is at least the length of its edge
+        Random r = new Random(3);
+        int w = 30;
+        WGraph_DS g = new WGraph_DS();
+        NodeCoordinates xy = new NodeCoordinates();
+        for (int i = 0; i < w * w; i++) {
+            g.addNode(i);
+            xy.set(i, i / w + r.nextDouble() / 2, i % w + r.nextDouble() / 2);
+        }
+        g.setCoordinates(xy);
+        heuristic h = g.getCoordinates().euclidean();
+        for (int i = 0; i < w * w; i++) {
+            for (int j : new int[]{i + 1, i + w}) {
+                if (j >= w * w || (j == i + 1 && j % w == 0) || r.nextInt(5) == 0) continue;
+                g.connect(i, j, h.estimate(i, j) * (1 + r.nextDouble()));
+            }
+        }
+        WGraph_Algo ag = new WGraph_Algo(g);
+        for (int k = 0; k < 200; k++) {
+            int src = r.nextInt(w * w), dest = r.nextInt(w * w);
+            double expected = ag.shortestPathDist(src, dest);
+            assertEquals(expected, ag.shortestPathDist(src, dest, h), 0.000001);
+            List<node_info> path = ag.shortestPath(src, dest, h);
+            if (expected == -1) {
+                assertNull(path);
+                continue;
+            }
+            double length = 0;
+            for (int i = 1; i < path.size(); i++) length += g.getEdge(path.get(i - 1).getKey(), path.get(i).getKey());
+            assertEquals(expected, length, 0.000001);
+            assertEquals(dest, path.get(path.size() - 1).getKey());
+        }
+        //the zero heuristic is a plain Dijkstra
+        assertEquals(ag.shortestPathDist(0, w * w - 1), ag.shortestPathDist(0, w * w - 1, (a, b) -> 0), 0.000001);
+        assertEquals(-1, ag.shortestPathDist(0, -3, h));
+        g.removeNode(5);
+        assertFalse(xy.contains(5));
+    }
+
+    @Test
+    void landmarks() {
+        weighted_graph g = WGraphDSTest.graphCreator(200, 600, 9);
+        g.addNode(500);
+        g.addNode(501);
+        g.connect(500, 501, 2);//another component
+        WGraph_Algo ag = new WGraph_Algo(g);
+        double[][] d = floydWarshall(g, 200);
+        LandmarkIndex index = ag.buildLandmarks(4);
+        assertEquals(4, index.landmarks().length);
+        for (int a = 0; a < 200; a += 7) {
+            for (int b = 0; b < 200; b++) {
+                double expected = d[a][b] == Double.POSITIVE_INFINITY ? -1 : d[a][b];
+                assertEquals(expected, ag.shortestPathDist(a, b), 0.000001);
+                assertTrue(index.lowerBound(a, b) <= d[a][b]);
+                assertTrue(index.upperBound(a, b) >= d[a][b]);
+            }
+        }
+        assertEquals(Double.POSITIVE_INFINITY, index.lowerBound(0, 500));
+        assertEquals(-1, index.lowerBound(0, 1000));
+        assertEquals(0, index.upperBound(7, 7));
+        index = ag.buildLandmarks(new int[]{3});
+        assertEquals(d[3][5], index.upperBound(3, 5), 0.0001);
+        assertEquals(d[3][5], index.lowerBound(3, 5), 0.0001);
+        //after a change the index is not used
+        g.connect(0, 199, 0);
+        assertEquals(0, ag.shortestPathDist(0, 199));
+        ag.buildLandmarks(new int[]{0, 1});
+        assertEquals(0, ag.shortestPathDist(199, 0));
+        assertThrows(IllegalArgumentException.class, () -> ag.buildLandmarks(new int[]{1000}));
+    }
+
+    @Test
+    void contractionHierarchy() {
+        for (int edges : new int[]{150, 400, 1500}) {
+            weighted_graph g = WGraphDSTest.graphCreator(200, edges, 11);
+            for (int i = 1; i < 200; i += 3) g.connect(i - 1, i, 0);//zero weights
+            WGraph_Algo ag = new WGraph_Algo(g);
+            ContractionHierarchy ch = ag.buildContractionHierarchy();
+            assertEquals(g.getMC(), ch.getMC());
+            double[][] d = floydWarshall(g, 200);
+            for (int src = 0; src < 200; src += 11) {
+                for (int dest = 0; dest < 200; dest++) {
+                    double expected = d[src][dest] == Double.POSITIVE_INFINITY ? -1 : d[src][dest];
+                    assertEquals(expected, ch.shortestPathDist(src, dest), 0.000001);
+                    List<node_info> path = ch.shortestPath(src, dest);
+                    if (expected == -1) {
+                        assertNull(path);
+                        continue;
+                    }
+                    assertEquals(g.getNode(src), path.get(0));
+                    assertEquals(g.getNode(dest), path.get(path.size() - 1));
+                    double length = 0;
+                    for (int i = 1; i < path.size(); i++) {
+                        assertTrue(g.hasEdge(path.get(i - 1).getKey(), path.get(i).getKey()));
+                        length += g.getEdge(path.get(i - 1).getKey(), path.get(i).getKey());
+                    }
+                    assertEquals(expected, length, 0.000001);
+                }
+            }
+            assertEquals(-1, ch.shortestPathDist(0, 1000));
+            assertNull(ch.shortestPath(-1, 0));
+            ch.release();
+            double expected = d[3][150] == Double.POSITIVE_INFINITY ? -1 : d[3][150];
+            assertEquals(expected, ch.shortestPathDist(3, 150), 0.000001);
+        }
+    }
+
+    @Test
+    void contractionHierarchyParallel() throws InterruptedException {
+        weighted_graph g = WGraphDSTest.graphCreator(200, 400, 12);
+        ContractionHierarchy ch = new WGraph_Algo(g).buildContractionHierarchy();
+        double[][] d = floydWarshall(g, 200);
+        Thread[] threads = new Thread[8];
+        boolean[] ok = new boolean[threads.length];
+        for (int k = 0; k < threads.length; k++) {
+            final int id = k;
+            threads[k] = new Thread(() -> {
+                boolean good = true;
+                for (int src = id; src < 200; src += threads.length) {
+                    for (int dest = 0; dest < 200; dest += 9) {
+                        double expected = d[src][dest] == Double.POSITIVE_INFINITY ? -1 : d[src][dest];
+                        if (Math.abs(expected - ch.shortestPathDist(src, dest)) > 0.000001) good = false;
+                    }
+                }
+                ok[id] = good;
+            });
+            threads[k].start();
+        }
+        for (Thread t : threads) t.join();
+        for (boolean b : ok) assertTrue(b);
+    }
+
+    @Test
+    void haversine() {
+        NodeCoordinates xy = new NodeCoordinates();
+        xy.set(1, 34.7818, 32.0853);//Tel Aviv
+        xy.set(2, 35.2137, 31.7683);//Jerusalem
+        xy.set(3, 0, 0);
+        xy.set(4, 180, 0);
+        heuristic h = xy.haversine();
+        assertEquals(54000, h.estimate(1, 2), 1000);
+        assertEquals(Math.PI * NodeCoordinates.EARTH_RADIUS, h.estimate(3, 4), 0.001);
+        assertEquals(0, h.estimate(1, 7));//no coordinates
+        assertEquals(h.estimate(1, 2) / 10, xy.haversine(0.1).estimate(2, 1), 0.000001);
+    }
+
+    @Test
+    void shortestPathTree() {
+        weighted_graph g = WGraphDSTest.graphCreator(200, 500, 13);
+        WGraph_Algo ag = new WGraph_Algo(g);
+        double[][] d = floydWarshall(g, 200);
+        ShortestPathTree t = null;
+        for (int src = 0; src < 200; src += 23) {
+            ShortestPathTree last = t;
+            t = ag.shortestPathTree(src, t);
+            if (last != null) assertSame(last, t);//reused
+            assertEquals(src, t.getSource());
+            for (int dest = 0; dest < 200; dest++) {
+                double expected = d[src][dest] == Double.POSITIVE_INFINITY ? -1 : d[src][dest];
+                assertEquals(expected, t.distTo(dest), 0.000001);
+                assertEquals(expected != -1, t.hasPathTo(dest));
+                assertEquals(ag.shortestPath(src, dest), t.pathTo(dest));
+                int i = t.indexOf(dest);
+                assertEquals(dest, t.keyAt(i));
+                if (expected == -1) assertEquals(Double.POSITIVE_INFINITY, t.distances()[i]);
+                else if (dest != src) assertTrue(g.hasEdge(dest, t.keyAt(t.predecessors()[i])));
+            }
+        }
+        assertNull(ag.shortestPathTree(1000));
+        assertEquals(-1, t.distTo(1000));
+        assertNull(t.pathTo(1000));
+        g.addNode(1000);//a graph with another number of nodes
+        assertNotSame(t, ag.shortestPathTree(1000, t));
+    }
+
+    @Test
+    void shortestPathDists() {
+        weighted_graph g = WGraphDSTest.graphCreator(200, 400, 17);
+        WGraph_Algo ag = new WGraph_Algo(g);
+        double[][] d = floydWarshall(g, 200);
+        int[] sources = {0, 5, 1000, 17, 199, 5};
+        int[] targets = {3, 5, -4, 150, 0};
+        ForkJoinPool pool = new ForkJoinPool(4);
+        double[][] m = ag.shortestPathDists(sources, targets, pool);
+        double[][] all = ag.shortestPathDists(sources, null);
+        pool.shutdown();
+        assertEquals(sources.length, m.length);
+        for (int i = 0; i < sources.length; i++) {
+            assertEquals(targets.length, m[i].length);
+            for (int j = 0; j < targets.length; j++) {
+                assertEquals(ag.shortestPathDist(sources[i], targets[j]), m[i][j], 0.000001);
+            }
+            assertEquals(200, all[i].length);//the keys are 0..199
+            for (int k = 0; k < 200; k++) {
+                double expected = sources[i] == 1000 || d[sources[i]][k] == Double.POSITIVE_INFINITY ? -1 : d[sources[i]][k];
+                assertEquals(expected, all[i][k], 0.000001);
+            }
+        }
+    }
+
+    @Test
+    void deltaStepping() {
+        for (int edges : new int[]{150, 1000}) {//not connected and connected
+            weighted_graph g = WGraphDSTest.graphCreator(200, edges, 6);
+            for (int i = 0; i < 199; i += 7) g.connect(i, i + 1, 0);//zero weight edges
+            WGraph_Algo ag = new WGraph_Algo(g);
+            ag.setSearch(WGraph_Algo.Search.DELTA_STEPPING);
+            double[][] d = floydWarshall(g, 200);
+            for (int src = 0; src < 200; src += 17) {
+                for (int dest = 0; dest < 200; dest++) {
+                    double expected = d[src][dest] == Double.POSITIVE_INFINITY ? -1 : d[src][dest];
+                    assertEquals(expected, ag.shortestPathDist(src, dest), 0.000001);
+                    List<node_info> path = ag.shortestPath(src, dest);
+                    if (expected == -1) {
+                        assertNull(path);
+                        continue;
+                    }
+                    assertEquals(src, path.get(0).getKey());
+                    assertEquals(dest, path.get(path.size() - 1).getKey());
+                    double length = 0;
+                    for (int i = 1; i < path.size(); i++) {
+                        length += g.getEdge(path.get(i - 1).getKey(), path.get(i).getKey());
+                    }
+                    assertEquals(expected, length, 0.000001);
+                }
+            }
+        }
+        //large frontiers, relaxed by more than one task
+        weighted_graph g = WGraphDSTest.graphCreator(5000, 40000, 8);
+        WGraph_Algo dijkstra = new WGraph_Algo(g), delta = new WGraph_Algo(g);
+        delta.setSearch(WGraph_Algo.Search.DELTA_STEPPING);
+        for (int dest = 0; dest < 5000; dest += 499) {
+            assertEquals(dijkstra.shortestPathDist(3, dest), delta.shortestPathDist(3, dest), 0.000001);
+            List<node_info> path = delta.shortestPath(3, dest);
+            assertEquals(dijkstra.shortestPath(3, dest) == null, path == null);
+        }
+        //a heavy edge (w just above delta) whose target rounds into the current bucket
+        weighted_graph h = new WGraph_DS();
+        for (int i = 0; i < 4; i++) h.addNode(i);
+        h.connect(0, 1, 15.021230379066417);
+        h.connect(1, 2, 0.6258845991277675);
+        h.connect(2, 3, 1);
+        WGraph_Algo heavy = new WGraph_Algo(h);
+        heavy.setSearch(WGraph_Algo.Search.DELTA_STEPPING);
+        heavy.setDelta(0.6258845991277674);
+        assertEquals(new WGraph_Algo(h).shortestPathDist(0, 3), heavy.shortestPathDist(0, 3), 0.000001);
+        assertEquals(4, heavy.shortestPath(0, 3).size());
+        //random near boundary weights, the engine is reused by the queries
+        java.util.Random r = new java.util.Random(19);
+        for (int round = 0; round < 20; round++) {
+            weighted_graph q = new WGraph_DS();
+            for (int i = 0; i < 30; i++) q.addNode(i);
+            double width = 0.1 + r.nextDouble();
+            for (int e = 0; e < 60; e++) {
+                double w = r.nextBoolean() ? width + Math.ulp(width) : r.nextInt(20) * width + r.nextDouble();
+                q.connect(r.nextInt(30), r.nextInt(30), w);
+            }
+            WGraph_Algo expected = new WGraph_Algo(q), actual = new WGraph_Algo(q);
+            actual.setSearch(WGraph_Algo.Search.DELTA_STEPPING);
+            actual.setDelta(width);
+            for (int dest = 0; dest < 30; dest++) {
+                assertEquals(expected.shortestPathDist(0, dest), actual.shortestPathDist(0, dest), 0.000001);
+            }
+        }
+    }
+
+    @Test
+    void queryCache() {
+        weighted_graph g = WGraphDSTest.graphCreator(200, 300, 9);
+        WGraph_Algo ag = new WGraph_Algo(g);
+        assertNull(ag.getQueryCache());
+        QueryCache c = ag.enableQueryCache(1 << 20);
+        double[][] d = floydWarshall(g, 200);
+        for (int round = 0; round < 2; round++) {
+            for (int src = 0; src < 200; src += 11) {
+                for (int dest = 0; dest < 200; dest += 3) {
+                    double expected = d[src][dest] == Double.POSITIVE_INFINITY ? -1 : d[src][dest];
+                    assertEquals(expected, ag.shortestPathDist(src, dest), 0.000001);
+                    List<node_info> path = ag.shortestPath(dest, src);//the other direction
+                    if (expected == -1) {
+                        assertNull(path);
+                        continue;
+                    }
+                    assertEquals(dest, path.get(0).getKey());
+                    assertEquals(src, path.get(path.size() - 1).getKey());
+                    double length = 0;
+                    for (int i = 1; i < path.size(); i++) {
+                        length += g.getEdge(path.get(i - 1).getKey(), path.get(i).getKey());
+                    }
+                    assertEquals(expected, length, 0.000001);
+                }
+            }
+        }
+        assertEquals(0, c.evictions());
+        assertTrue(c.hits() >= c.misses());//the second round is all hits
+        assertTrue(c.bytes() > 0 && c.bytes() <= c.getMaxBytes());
+        //a tree answers all the pairs of its source
+        long hits = c.hits();
+        ShortestPathTree t = ag.shortestPathTree(7);
+        assertEquals(t.distTo(100), ag.shortestPathDist(100, 7));
+        assertEquals(t.pathTo(150), ag.shortestPath(7, 150));
+        assertEquals(hits + 2, c.hits());
+        ShortestPathTree cached = ag.shortestPathTree(7, t);
+        assertEquals(hits + 3, c.hits());
+        for (int k = 0; k < 200; k++) assertEquals(d[7][k] == Double.POSITIVE_INFINITY ? -1 : d[7][k], cached.distTo(k), 0.000001);
+        //a change of the graph drops the results
+        g.connect(0, 199, 0.5);
+        d = floydWarshall(g, 200);
+        assertEquals(d[0][199], ag.shortestPathDist(0, 199), 0.000001);
+        assertEquals(d[11][199], ag.shortestPathDist(199, 11), 0.000001);
+        assertEquals(1, c.invalidations());
+        //a small budget evicts the least recently used results
+        c = ag.enableQueryCache(2000);
+        for (int dest = 1; dest < 100; dest++) ag.shortestPathDist(0, dest);
+        assertTrue(c.evictions() > 0);
+        assertTrue(c.bytes() <= 2000);
+        ag.shortestPathDist(0, 99);
+        assertEquals(1, c.hits());
+        ag.shortestPathDist(0, 1);
+        assertEquals(1, c.hits());
+        ag.disableQueryCache();
+        assertNull(ag.getQueryCache());
+    }
+
+    @Test
+    void queriesDoNotTouchNodes() {
+        weighted_graph g = smallGraphCreator();
+        for (node_info n : g.getV()) {
+            n.setTag(n.getKey() * 10);
+            n.setInfo("x" + n.getKey());
+        }
+        weighted_graph_algorithms ag = new WGraph_Algo();
+        ag.init(g);
+        assertTrue(ag.isConnected());
+        assertEquals(19.5, ag.shortestPathDist(1,10));
+        assertNotNull(ag.shortestPath(4,7));
+        for (node_info n : g.getV()) {
+            assertEquals(n.getKey() * 10, n.getTag());
+            assertEquals("x" + n.getKey(), n.getInfo());
+        }
+    }
+
+    @Test
+    void parallelQueries() throws InterruptedException {
+        weighted_graph g = WGraphDSTest.graphCreator(300,1500,4);
+        weighted_graph_algorithms ag = new WGraph_Algo();
+        ag.init(g);
+        double[][] d = floydWarshall(g, 300);
+        Thread[] threads = new Thread[4];
+        boolean[] ok = new boolean[threads.length];
+        for (int k = 0; k < threads.length; k++) {
+            final int id = k;
+            threads[k] = new Thread(() -> {
+                boolean good = true;
+                for (int src = id; src < 300; src += threads.length) {
+                    for (int dest = 0; dest < 300; dest += 7) {
+                        double expected = d[src][dest]==Double.POSITIVE_INFINITY ? -1 : d[src][dest];
+                        if (Math.abs(expected - ag.shortestPathDist(src, dest)) > 0.000001) good = false;
+                    }
+                }
+                ok[id] = good;
+            });
+            threads[k].start();
+        }
+        for (Thread t : threads) t.join();
+        for (boolean b : ok) assertTrue(b);
+    }
+
+    @Test
+    void releaseTrees() throws InterruptedException {
+        weighted_graph g = WGraphDSTest.graphCreator(200,1000,5);
+        WGraph_Algo ag = new WGraph_Algo();
+        ag.init(g);
+        for (WGraph_Algo.Search search : WGraph_Algo.Search.values()) {
+            ag.setSearch(search);
+            for (int round = 0; round < 2; round++) {
+                double[][] d = floydWarshall(g, g.nodeSize());
+                Thread[] threads = new Thread[8];
+                boolean[] ok = new boolean[threads.length];
+                for (int k = 0; k < threads.length; k++) {
+                    final int id = k;
+                    threads[k] = new Thread(() -> {
+                        boolean good = true;
+                        for (int src = id; src < g.nodeSize(); src += threads.length) {
+                            int dest = (src * 31) % g.nodeSize();
+                            double expected = d[src][dest]==Double.POSITIVE_INFINITY ? -1 : d[src][dest];
+                            if (Math.abs(expected - ag.shortestPathDist(src, dest)) > 0.000001) good = false;
+                        }
+                        ok[id] = good;
+                    });
+                    threads[k].start();
+                }
+                for (Thread t : threads) t.join();
+                for (boolean b : ok) assertTrue(b);
+                ag.release();
+                // a snapshot of another size, the pooled trees of the old one are not reused
+                g.addNode(g.nodeSize());
+                g.connect(g.nodeSize() - 1, 0, 0.5);
+            }
+        }
+    }
+
+    @Test
+    void frozenGraph() {
+        WGraph_DS g = (WGraph_DS) smallGraphCreator();
+        weighted_graph_algorithms ag = new WGraph_Algo();
+        ag.init(g.freeze());
+        assertTrue(ag.isConnected());
+        assertEquals(19.5, ag.shortestPathDist(1,10));
+        List<node_info> sp = ag.shortestPath(1,10);
+        int[] arr = {1,4,6,8,3,9,2,10};
+        assertEquals(arr.length, sp.size());
+        for (int i = 0; i < arr.length; i++) assertEquals(arr[i], sp.get(i).getKey());
+        assertEquals(g, ag.copy());
+    }
+
     @Test
     void save_load() {
         weighted_graph g0 = WGraphDSTest.graphCreator(10,23,1);
@@ -70,6 +574,75 @@ public class WGraphAlgoTest {
         assertNotEquals(g0,g1);
     }
 
+    @Test
+    void save_load_binary() {
+        weighted_graph g0 = WGraphDSTest.graphCreator(100,400,6);
+        g0.addNode(1000);//a node without edges
+        weighted_graph_algorithms ag0 = new WGraph_Algo();
+        ag0.init(g0);
+        assertTrue(ag0.save("g1.bin"));
+        weighted_graph_algorithms ag1 = new WGraph_Algo();
+        assertTrue(ag1.load("g1.bin"));
+        assertSameGraph(g0, ag1.getGraph());
+        assertFalse(ag1.load("missing.bin"));
+        assertSameGraph(g0, ag1.getGraph());//not changed
+    }
+
+    @Test
+    void load_serialized() throws IOException {
+        weighted_graph g0 = WGraphDSTest.graphCreator(10,23,1);
+        ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream("g2.obj"));
+        out.writeObject(g0);
+        out.close();
+        weighted_graph_algorithms ag = new WGraph_Algo();
+        assertTrue(ag.load("g2.obj"));
+        assertSameGraph(g0, ag.getGraph());
+    }
+
+    @Test
+    void saveCSR_loadMapped() {
+        weighted_graph g0 = WGraphDSTest.graphCreator(101,400,7);
+        weighted_graph_algorithms ag0 = new WGraph_Algo();
+        ag0.init(g0);
+        assertTrue(((WGraph_Algo) ag0).saveCSR("g3.csr"));
+        WGraph_Algo ag1 = new WGraph_Algo();
+        assertTrue(ag1.loadMapped("g3.csr"));
+        assertSameGraph(g0, ag1.getGraph());
+        assertThrows(UnsupportedOperationException.class, () -> ag1.getGraph().addNode(1000));
+        for (int dest = 0; dest < 101; dest += 5) assertEquals(ag0.shortestPathDist(3,dest), ag1.shortestPathDist(3,dest));
+        WGraph_Algo ag2 = new WGraph_Algo();
+        assertTrue(ag2.load("g3.csr"));//load maps CSR files as well
+        assertSameGraph(g0, ag2.getGraph());
+        assertTrue(ag1.save("g3.bin"));//a mapped graph is saved like any graph
+        assertTrue(ag2.load("g3.bin"));
+        assertSameGraph(g0, ag2.getGraph());
+    }
+
+    static void assertSameGraph(weighted_graph expected, weighted_graph actual) {
+        assertEquals(expected.nodeSize(), actual.nodeSize());
+        assertEquals(expected.edgeSize(), actual.edgeSize());
+        for (node_info n : expected.getV()) {
+            assertNotNull(actual.getNode(n.getKey()));
+            expected.forEachNeighbor(n.getKey(), (ni, w) -> assertEquals(w, actual.getEdge(n.getKey(), ni)));
+        }
+    }
+
+    static double[][] floydWarshall(weighted_graph g, int v_size) {
+        double[][] d = new double[v_size][v_size];
+        for (int i = 0; i < v_size; i++) {
+            for (int j = 0; j < v_size; j++) {
+                if (i==j) d[i][j] = 0;
+                else if (g.hasEdge(i,j)) d[i][j] = g.getEdge(i,j);
+                else d[i][j] = Double.POSITIVE_INFINITY;
+            }
+        }
+        for (int k = 0; k < v_size; k++)
+            for (int i = 0; i < v_size; i++)
+                for (int j = 0; j < v_size; j++)
+                    if (d[i][k] + d[k][j] < d[i][j]) d[i][j] = d[i][k] + d[k][j];
+        return d;
+    }
+
     private weighted_graph smallGraphCreator() {
         weighted_graph graph = new WGraph_DS();
         weighted_graph_algorithms ga = new WGraph_Algo();
@@ -1,5 +1,8 @@
 package ex1.tests;
 
+import ex1.src.ConcurrentWGraph_DS;
+import ex1.src.ConnectedComponents;
+import ex1.src.WGraph_Algo;
 import ex1.src.WGraph_DS;
 import ex1.src.node_info;
 import ex1.src.weighted_graph;
@@ -7,6 +10,7 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -96,6 +100,271 @@ public class WGraphDSTest {
         assertTrue(g0.getV().containsAll(g1.getV()) && g1.getV().containsAll(g0.getV()));
     }
 
+    @Test
+    void forEachNeighbor() {
+        weighted_graph g = smallGraphCreator();
+        g.connect(1, 3, 2.5);
+        HashMap<Integer, Double> ni = new HashMap<>();
+        g.forEachNeighbor(1, (key, w) -> ni.put(key, w));
+        assertEquals(3, ni.size());
+        assertEquals(0.5, ni.get(0));
+        assertEquals(0.5, ni.get(2));
+        assertEquals(2.5, ni.get(3));
+        g.forEachNeighbor(18, (key, w) -> fail("node does not exist"));
+        assertEquals(-1, g.getEdge(18, 1));//node does not exist
+    }
+
+    @Test
+    void manyConnectAndRemoveEdge() {
+        weighted_graph g = new WGraph_DS();
+        HashMap<Long, Double> edges = new HashMap<>();
+        Random r = new Random(5);
+        for (int i = 0; i < 50; i++) g.addNode(i * 7919);
+        for (int i = 0; i < 20000; i++) {
+            int a = r.nextInt(50) * 7919, b = r.nextInt(50) * 7919;
+            if (a == b) continue;
+            long e = ((long) Math.min(a, b) << 32) | Math.max(a, b);
+            if (r.nextInt(3) == 0) {
+                g.removeEdge(a, b);
+                edges.remove(e);
+            }
+            else {
+                double w = r.nextInt(10);
+                g.connect(a, b, w);
+                edges.put(e, w);
+            }
+        }
+        assertEquals(edges.size(), g.edgeSize());
+        int degrees = 0;
+        for (node_info n : g.getV()) degrees += g.getV(n.getKey()).size();
+        assertEquals(2 * edges.size(), degrees);
+        for (int a = 0; a < 50; a++) {
+            for (int b = a + 1; b < 50; b++) {
+                long e = ((long) (a * 7919) << 32) | (b * 7919);
+                assertEquals(edges.containsKey(e), g.hasEdge(b * 7919, a * 7919));
+                assertEquals(edges.containsKey(e) ? edges.get(e) : -1, g.getEdge(a * 7919, b * 7919));
+            }
+        }
+    }
+
+    @Test
+    void freeze() {
+        weighted_graph g = graphCreator(100, 400, 2);
+        for (int i = 1; i < 100; i += 2) g.connect(0, i, i);//a node with a large degree
+        weighted_graph csr = ((WGraph_DS) g).freeze();
+        assertEquals(g.nodeSize(), csr.nodeSize());
+        assertEquals(g.edgeSize(), csr.edgeSize());
+        assertEquals(g.getMC(), csr.getMC());
+        for (node_info n : g.getV()) {
+            assertNotNull(csr.getNode(n.getKey()));
+            assertEquals(g.getV(n.getKey()).size(), csr.getV(n.getKey()).size());
+            for (node_info ni : g.getV(n.getKey())) {
+                assertTrue(csr.hasEdge(n.getKey(), ni.getKey()));
+                assertEquals(g.getEdge(n.getKey(), ni.getKey()), csr.getEdge(n.getKey(), ni.getKey()));
+            }
+        }
+        assertNull(csr.getNode(100));
+        assertFalse(csr.hasEdge(0, 100));
+        assertEquals(-1, csr.getEdge(-8, 3));
+        assertThrows(UnsupportedOperationException.class, () -> csr.connect(0, 1, 1));
+        g.removeNode(0);
+        assertEquals(100, csr.nodeSize());//the snapshot does not change
+    }
+
+    @Test
+    void copy() {
+        WGraph_DS g = (WGraph_DS) graphCreator(100, 400, 3);
+        g.getNode(5).setInfo("five");
+        g.getNode(5).setTag(5);
+        WGraph_DS copy = new WGraph_DS(g);
+        assertEquals(g, copy);
+        assertEquals(g.nodeSize(), copy.nodeSize());
+        assertEquals(g.edgeSize(), copy.edgeSize());
+        assertEquals("five", copy.getNode(5).getInfo());
+        assertEquals(5, copy.getNode(5).getTag());
+        for (node_info n : g.getV()) {
+            for (node_info ni : g.getV(n.getKey())) {
+                assertEquals(g.getEdge(n.getKey(), ni.getKey()), copy.getEdge(n.getKey(), ni.getKey()));
+            }
+        }
+        //the two graphs are independent
+        copy.getNode(5).setTag(7);
+        copy.removeNode(0);
+        copy.connect(1, 2, 100);
+        assertEquals(5, g.getNode(5).getTag());
+        assertEquals(100, g.nodeSize());
+        assertNotEquals(100, g.getEdge(1, 2));
+        assertEquals(g, new WGraph_Algo(g.freeze()).copy());
+    }
+
+    @Test
+    void copyOnWrite() {
+        WGraph_DS g = (WGraph_DS) graphCreator(100, 400, 4);
+        WGraph_DS before = new WGraph_DS(g);
+        WGraph_DS cow = g.copyOnWrite();
+        assertEquals(g, cow);
+        assertEquals(g.edgeSize(), cow.edgeSize());
+        //changes of the clone are not seen by the graph
+        cow.connect(1, 2, 100);
+        cow.removeEdge(3, cow.getV(3).iterator().next().getKey());
+        cow.removeNode(4);
+        cow.getNode(5).setInfo("x");
+        assertEquals(100, cow.getEdge(1, 2));
+        for (node_info n : g.getV()) {
+            assertEquals(before.getV(n.getKey()).size(), g.getV(n.getKey()).size());
+            for (node_info ni : before.getV(n.getKey())) {
+                assertEquals(before.getEdge(n.getKey(), ni.getKey()), g.getEdge(n.getKey(), ni.getKey()));
+            }
+        }
+        assertNull(g.getNode(5).getInfo());
+        //and changes of the graph are not seen by the clone
+        WGraph_DS cowBefore = new WGraph_DS(cow);
+        g.removeNode(6);
+        g.connect(7, 8, 200);
+        g.connect(1, 2, 300);
+        assertNotNull(cow.getNode(6));
+        assertEquals(cowBefore.getEdge(7, 8), cow.getEdge(7, 8));
+        assertEquals(100, cow.getEdge(1, 2));
+        assertEquals(cowBefore.edgeSize(), cow.edgeSize());
+        for (node_info n : cow.getV()) {
+            for (node_info ni : cowBefore.getV(n.getKey())) {
+                assertEquals(cowBefore.getEdge(n.getKey(), ni.getKey()), cow.getEdge(n.getKey(), ni.getKey()));
+            }
+        }
+    }
+
+    @Test
+    void snapshot() {
+        WGraph_DS g = (WGraph_DS) graphCreator(100, 400, 6);
+        WGraph_DS before = new WGraph_DS(g);
+        WGraph_DS v = g.snapshot();
+        assertTrue(v.isReadOnly());
+        assertFalse(g.isReadOnly());
+        assertEquals(g.getMC(), v.getMC());
+        assertThrows(UnsupportedOperationException.class, () -> v.addNode(1000));
+        assertThrows(UnsupportedOperationException.class, () -> v.connect(1, 2, 3));
+        assertThrows(UnsupportedOperationException.class, () -> v.removeEdge(1, 2));
+        assertThrows(UnsupportedOperationException.class, () -> v.removeNode(1));
+        assertThrows(UnsupportedOperationException.class, () -> v.connectAll(new int[]{1}, new int[]{2}, new double[]{3}));
+        g.removeNode(0);
+        g.connect(1, 2, 100);
+        g.connectAll(new int[]{3, 200}, new int[]{4, 201}, new double[]{100, 1});
+        assertEquals(before, v);
+        assertEquals(before.edgeSize(), v.edgeSize());
+        for (node_info n : before.getV()) {
+            assertEquals(before.getV(n.getKey()).size(), v.getV(n.getKey()).size());
+            for (node_info ni : before.getV(n.getKey())) {
+                assertEquals(before.getEdge(n.getKey(), ni.getKey()), v.getEdge(n.getKey(), ni.getKey()));
+            }
+        }
+        WGraph_DS copy = v.copyOnWrite();//a writable copy of a version
+        copy.connect(1, 2, 7);
+        assertEquals(7, copy.getEdge(1, 2));
+        assertEquals(before.getEdge(1, 2), v.getEdge(1, 2));
+    }
+
+    @Test
+    void connectAll() {
+        for (int size : new int[]{1000, 100000}) {//one thread and (maybe) several
+            for (weighted_graph g : new weighted_graph[]{graphCreator(100, 200, 5), new ConcurrentWGraph_DS()}) {
+                weighted_graph expected = new WGraph_DS();
+                for (node_info n : g.getV()) expected.addNode(n.getKey());
+                for (node_info n : g.getV()) {
+                    for (node_info ni : g.getV(n.getKey())) expected.connect(n.getKey(), ni.getKey(), g.getEdge(n.getKey(), ni.getKey()));
+                }
+                Random r = new Random(size);
+                int[] src = new int[size], dst = new int[size];
+                double[] w = new double[size];
+                for (int e = 0; e < size; e++) {
+                    src[e] = r.nextInt(size / 10);
+                    dst[e] = r.nextInt(size / 10);//duplicates and nodes with themselves
+                    w[e] = e % 50 == 0 ? -1 : r.nextInt(5);//and bad weights
+                    expected.addNode(src[e]);
+                    expected.addNode(dst[e]);
+                    expected.connect(src[e], dst[e], w[e]);
+                }
+                int mc = g.getMC();
+                g.connectAll(src, dst, w);
+                assertEquals(mc + 1, g.getMC());
+                assertEquals(expected.nodeSize(), g.nodeSize());
+                assertEquals(expected.edgeSize(), g.edgeSize());
+                for (node_info n : expected.getV()) {
+                    assertEquals(expected.getV(n.getKey()).size(), g.getV(n.getKey()).size());
+                    for (node_info ni : expected.getV(n.getKey())) {
+                        assertEquals(expected.getEdge(n.getKey(), ni.getKey()), g.getEdge(n.getKey(), ni.getKey()));
+                    }
+                }
+                g.connectAll(src, dst, w);//nothing new
+                assertEquals(mc + 1, g.getMC());
+                g.removeEdges(Arrays.copyOf(src, size / 2), Arrays.copyOf(dst, size / 2));
+                for (int e = 0; e < size / 2; e++) expected.removeEdge(src[e], dst[e]);
+                assertEquals(mc + 2, g.getMC());
+                assertEquals(expected.edgeSize(), g.edgeSize());
+                for (int e = 0; e < size; e++) assertEquals(expected.getEdge(src[e], dst[e]), g.getEdge(src[e], dst[e]));
+                g.removeEdges(new int[]{src[0]}, new int[]{dst[0]});//already removed
+                assertEquals(mc + 2, g.getMC());
+                assertThrows(IllegalArgumentException.class, () -> g.connectAll(new int[1], new int[2], new double[1]));
+            }
+        }
+        WGraph_DS g = new WGraph_DS();
+        g.enableConnectivityIndex();
+        g.connectAll(new int[]{1, 2, 4, 6}, new int[]{2, 3, 5, 6}, new double[]{1, 1, 1, 1});
+        assertEquals(3, g.componentCount());//1-2-3, 4-5, 6
+        assertTrue(g.connected(1, 3));
+    }
+
+    @Test
+    void connectivityIndex() {
+        WGraph_DS g = new WGraph_DS();
+        assertThrows(IllegalStateException.class, g::componentCount);
+        for (int i = 0; i < 5; i++) g.addNode(i);
+        g.connect(0, 1, 1);
+        g.enableConnectivityIndex();
+        assertEquals(4, g.componentCount());
+        g.connect(1, 2, 1);
+        g.connect(3, 4, 1);
+        assertEquals(2, g.componentCount());
+        assertTrue(g.connected(0, 2));
+        assertFalse(g.connected(0, 3));
+        assertEquals(3, g.componentSize(2));
+        g.connect(2, 3, 1);
+        g.connect(0, 4, 1);//a cycle
+        assertEquals(1, g.componentCount());
+        g.removeEdge(2, 3);//there is another path
+        assertEquals(1, g.componentCount());
+        g.removeNode(0);
+        assertEquals(2, g.componentCount());
+        assertEquals(2, g.componentSize(1));
+        assertEquals(0, g.componentSize(0));
+        assertFalse(g.connected(0, 1));
+        g.disableConnectivityIndex();
+        assertFalse(g.hasConnectivityIndex());
+    }
+
+    @Test
+    void connectivityIndexRandom() {
+        Random r = new Random(7);
+        WGraph_DS g = new WGraph_DS();
+        for (int i = 0; i < 60; i++) g.addNode(i);
+        g.enableConnectivityIndex();
+        for (int i = 0; i < 3000; i++) {
+            int a = r.nextInt(70), b = r.nextInt(70);
+            int op = r.nextInt(10);
+            if (op < 5) g.connect(a, b, 1);
+            else if (op < 9) g.removeEdge(a, b);
+            else {
+                g.removeNode(a);
+                g.addNode(b);
+            }
+            ConnectedComponents cc = new WGraph_Algo(g).connectedComponents();
+            assertEquals(cc.count(), g.componentCount());
+            for (int k = 0; k < 10; k++) {
+                int x = r.nextInt(70), y = r.nextInt(70);
+                assertEquals(cc.connected(x, y), g.connected(x, y));
+            }
+        }
+    }
+
     public static weighted_graph smallGraphCreator() {
         weighted_graph g = new WGraph_DS();
         for (int i = 0; i < 5; i++) {
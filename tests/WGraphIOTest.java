@@ -0,0 +1,293 @@
+package ex1.tests;
+
+import ex1.src.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WGraphIOTest {
+    @Test
+    void exportAndImportEdgeList() throws IOException {
+        weighted_graph g0 = WGraphDSTest.graphCreator(1000, 5000, 8);//larger than the buffers
+        g0.addNode(-5);//a node without edges
+        g0.connect(1, 2, 1e-7);
+        g0.connect(3, 4, 123456.789);
+        WGraph_IO.exportEdgeList(g0, "g.txt");
+        weighted_graph g1 = new WGraph_DS();
+        List<Long> progress = new ArrayList<>();
+        long lines = WGraph_IO.importEdgeList("g.txt", g1, progress::add);
+        assertEquals(g0.edgeSize() + 1, lines);
+        assertEquals(lines, progress.get(progress.size() - 1));
+        WGraphAlgoTest.assertSameGraph(g0, g1);
+    }
+
+    @Test
+    void importCsv() throws IOException {
+        write("g.csv", "# node1,node2,weight\r\n1,2,0.5\r\n\r\n2, 3 ,1.25\r\n7\r\n  3\t4\t2E-1\r\n-1,3,3");
+        weighted_graph g = new WGraph_DS();
+        WGraph_IO.importEdgeList("g.csv", g, null);
+        assertEquals(6, g.nodeSize());
+        assertEquals(4, g.edgeSize());
+        assertEquals(0.5, g.getEdge(2, 1));
+        assertEquals(1.25, g.getEdge(3, 2));
+        assertEquals(0.2, g.getEdge(3, 4));
+        assertEquals(3, g.getEdge(-1, 3));
+        assertNotNull(g.getNode(7));
+    }
+
+    @Test
+    void importMalformed() throws IOException {
+        write("bad1.txt", "1 2 0.5\n1 2\n");
+        assertThrows(IOException.class, () -> WGraph_IO.importEdgeList("bad1.txt", new WGraph_DS(), null));
+        write("bad2.txt", "1 x 0.5\n");
+        assertThrows(IOException.class, () -> WGraph_IO.importEdgeList("bad2.txt", new WGraph_DS(), null));
+        write("bad3.txt", "1 2 0.5 7\n");
+        assertThrows(IOException.class, () -> WGraph_IO.importEdgeList("bad3.txt", new WGraph_DS(), null));
+        write("bad4.txt", "1 2 0.5.1\n");
+        assertThrows(IOException.class, () -> WGraph_IO.importEdgeList("bad4.txt", new WGraph_DS(), null));
+    }
+
+    @Test
+    void compressed() throws IOException {
+        weighted_graph g0 = WGraphDSTest.graphCreator(3000, 12000, 5);//more than one block
+        g0.addNode(-70000);//a node without edges
+        g0.addNode(Integer.MAX_VALUE);
+        g0.connect(Integer.MAX_VALUE, 7, 2.5);
+        g0.connect(Integer.MAX_VALUE, -70000, 0);
+        WGraph_IO.saveCompressed(g0, "g.wgz");
+        WGraphAlgoTest.assertSameGraph(g0, WGraph_IO.loadCompressed("g.wgz"));
+        weighted_graph_algorithms ga = new WGraph_Algo();
+        assertTrue(ga.load("g.wgz"));
+        WGraphAlgoTest.assertSameGraph(g0, ga.getGraph());
+        // random access, in any order
+        CompressedGraph closed;
+        try (CompressedGraph cg = WGraph_IO.openCompressed("g.wgz")) {
+            assertEquals(g0.nodeSize(), cg.nodeSize());
+            assertEquals(g0.edgeSize(), cg.edgeSize());
+            for (int key : new int[]{Integer.MAX_VALUE, 2999, 0, -70000, 1500, 7}) {
+                List<Integer> neighbors = new ArrayList<>();
+                assertTrue(cg.forEachNeighbor(key, (ni, w) -> {
+                    assertEquals(g0.getEdge(key, ni), w);
+                    neighbors.add(ni);
+                }));
+                assertEquals(g0.getV(key).size(), neighbors.size());
+                assertEquals(neighbors.size(), cg.degree(key));
+                for (int k = 1; k < neighbors.size(); k++) assertTrue(neighbors.get(k - 1) < neighbors.get(k));
+            }
+            assertEquals(2.5, cg.getEdge(7, Integer.MAX_VALUE));
+            assertEquals(-1, cg.getEdge(7, -70000));
+            assertFalse(cg.hasNode(3000));
+            assertFalse(cg.forEachNeighbor(-1, (ni, w) -> fail("a missing node has no edges")));
+            assertEquals(-1, cg.degree(Integer.MIN_VALUE));
+            closed = cg;
+        }
+        assertThrows(IOException.class, () -> closed.degree(7));
+        // quantized weights
+        WGraph_IO.saveCompressed(g0, "g.wgz", CompressedGraph.Weights.FIXED, 0.01);
+        weighted_graph fixed = WGraph_IO.loadCompressed("g.wgz");
+        WGraph_IO.saveCompressed(g0, "g2.wgz", CompressedGraph.Weights.FLOAT, 0);
+        weighted_graph floats = WGraph_IO.loadCompressed("g2.wgz");
+        assertEquals(g0.edgeSize(), fixed.edgeSize());
+        assertEquals(g0.edgeSize(), floats.edgeSize());
+        for (node_info n : g0.getV()) {
+            g0.forEachNeighbor(n.getKey(), (ni, w) -> {
+                assertEquals(w, fixed.getEdge(n.getKey(), ni), 0.005 + 1e-12);
+                assertEquals((float) w, floats.getEdge(n.getKey(), ni));
+            });
+        }
+        assertTrue(new File("g.wgz").length() < new File("g2.wgz").length());
+        assertThrows(IllegalArgumentException.class, () -> WGraph_IO.saveCompressed(g0, "g.wgz", CompressedGraph.Weights.FIXED, 0));
+        assertThrows(IOException.class, () -> WGraph_IO.openCompressed("bad1.txt"));
+    }
+
+    @Test
+    void mapBadFile() throws IOException {
+        WGraph_IO.saveCSR(WGraphDSTest.graphCreator(10, 20, 1), "g.csr");
+        // n (8), 2|E| (12), a key (16 + 4), an offset (16 + 4n + 8)
+        for (int[] field : new int[][]{{8, -1}, {12, -2}, {12, 39}, {8, 1 << 30}, {20, -7}, {64, 1000}}) {
+            byte[] bytes = java.nio.file.Files.readAllBytes(java.nio.file.Paths.get("g.csr"));
+            java.nio.ByteBuffer.wrap(bytes).putInt(field[0], field[1]);
+            java.nio.file.Files.write(java.nio.file.Paths.get("bad.csr"), bytes);
+            assertThrows(IOException.class, () -> WGraph_IO.map("bad.csr"));
+            assertFalse(new WGraph_Algo().loadMapped("bad.csr"));
+        }
+        write("bad.csr", "WG");
+        assertThrows(IOException.class, () -> WGraph_IO.map("bad.csr"));
+    }
+
+    @Test
+    void compressedCorrupt() throws IOException {
+        WGraph_IO.saveCompressed(WGraphDSTest.graphCreator(300, 1000, 2), "g.wgz");
+        // header fields: nodes (8), edges (12), dictionary size (17), blocks (29), the low half of the block index position (37)
+        for (int[] field : new int[][]{{8, -3}, {12, -1}, {17, -2}, {29, -1}, {29, 1000}, {37, 0}}) {
+            byte[] bytes = java.nio.file.Files.readAllBytes(java.nio.file.Paths.get("g.wgz"));
+            java.nio.ByteBuffer.wrap(bytes).putInt(field[0], field[1]);
+            java.nio.file.Files.write(java.nio.file.Paths.get("bad.wgz"), bytes);
+            assertThrows(IOException.class, () -> WGraph_IO.openCompressed("bad.wgz"));
+            assertFalse(new WGraph_Algo().load("bad.wgz"));
+        }
+        // a damaged block
+        byte[] bytes = java.nio.file.Files.readAllBytes(java.nio.file.Paths.get("g.wgz"));
+        java.nio.ByteBuffer header = java.nio.ByteBuffer.wrap(bytes);
+        int block = (int) header.getLong((int) header.getLong(33) + 4);//the position of the first block
+        for (int i = block; i < block + 30; i++) bytes[i] ^= 0x5a;
+        java.nio.file.Files.write(java.nio.file.Paths.get("bad.wgz"), bytes);
+        try (CompressedGraph cg = WGraph_IO.openCompressed("bad.wgz")) {
+            assertThrows(IOException.class, () -> cg.forEachNeighbor(0, (ni, w) -> { }));
+            assertThrows(IOException.class, cg::toGraph);
+        }
+        assertFalse(new WGraph_Algo().load("bad.wgz"));
+    }
+
+    @Test
+    void mutationLog() throws Exception {
+        File dir = new File("wal");
+        delete(dir);
+        WGraph_DS g = MutationLog.recover("wal");
+        assertEquals(0, g.nodeSize());
+        MutationLog log = MutationLog.open("wal");
+        g.setLog(log);
+        WGraph_DS expected = new WGraph_DS();
+        for (int i = 0; i < 200; i++) {
+            g.addNode(i);
+            expected.addNode(i);
+        }
+        int[] src = new int[600], dst = new int[600];
+        double[] w = new double[600];
+        for (int e = 0; e < 600; e++) {
+            src[e] = (e * 7) % 200;
+            dst[e] = (e * 13 + 1) % 250; // adds nodes 200..249
+            w[e] = e % 17;
+        }
+        g.connectAll(src, dst, w);
+        expected.connectAll(src, dst, w);
+        log.commit();
+        assertEquals(0, log.uncommitted());
+        log.checkpoint(g);
+        // several threads commit their own mutations, in groups
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int first = 1000 + 100 * t;
+            threads[t] = new Thread(() -> {
+                for (int i = first; i < first + 100; i++) {
+                    synchronized (g) {
+                        g.addNode(i);
+                        g.connect(i, i % 200, i);
+                    }
+                    try {
+                        log.commit();
+                    }
+                    catch (java.io.IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads) t.join();
+        for (int i = 1000; i < 1400; i++) {
+            expected.addNode(i);
+            expected.connect(i, i % 200, i);
+        }
+        g.removeNode(3);
+        expected.removeNode(3);
+        g.removeEdges(new int[]{0, 1}, new int[]{1, 8});
+        expected.removeEdges(new int[]{0, 1}, new int[]{1, 8});
+        g.connect(5, 6, 0.5);
+        expected.connect(5, 6, 0.5);
+        log.commit();
+        // not committed, and torn by a crash
+        g.removeEdge(5, 6);
+        FileOutputStream torn = new FileOutputStream(new File(dir, "log-1.wal"), true);
+        torn.write(new byte[]{0, 0, 0, 9, 3, 0});
+        torn.close();
+        WGraph_DS recovered = MutationLog.recover("wal");
+        WGraphAlgoTest.assertSameGraph(expected, recovered);
+        assertEquals(0.5, recovered.getEdge(5, 6));
+        // the torn record was cut off, new mutations go after it
+        recovered.setLog(MutationLog.open("wal"));
+        recovered.removeEdge(5, 6);
+        expected.removeEdge(5, 6);
+        recovered.getLog().close();
+        WGraphAlgoTest.assertSameGraph(expected, MutationLog.recover("wal"));
+        assertFalse(new File(dir, "log-0.wal").exists());
+        delete(dir);
+    }
+
+    private static void delete(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+
+    @Test
+    void loadBadCounts() throws IOException {
+        WGraph_IO.save(WGraphDSTest.graphCreator(10, 20, 1), "g.bin");
+        for (int[] counts : new int[][]{{-5, 20}, {10, -1}, {10, 21}, {Integer.MAX_VALUE, 20}}) {
+            RandomAccessFile f = new RandomAccessFile("g.bin", "rw");
+            f.seek(8);
+            f.writeInt(counts[0]);
+            f.writeInt(counts[1]);
+            f.close();
+            assertThrows(IOException.class, () -> WGraph_IO.load("g.bin"));
+            assertFalse(new WGraph_Algo().load("g.bin"));
+        }
+    }
+
+    @Test
+    void loadBadRecords() throws IOException {
+        WGraph_DS g = new WGraph_DS();
+        for (int i = 0; i < 4; i++) g.addNode(i);
+        g.connect(0, 1, 1);
+        g.connect(1, 2, 2);
+        g.connect(2, 3, 3);
+        WGraph_IO.save(g, "g.bin");
+        assertEquals(g, WGraph_IO.load("g.bin"));
+        // nodes at 16..31, edges (src, dst, weight) at 32, 48 and 64
+        String[] messages = {"twice", "self loop", "bad weight", "bad weight", "bad weight", "missing node", "duplicate edges"};
+        for (int k = 0; k < messages.length; k++) {
+            WGraph_IO.save(g, "g.bin");
+            RandomAccessFile f = new RandomAccessFile("g.bin", "rw");
+            switch (k) {
+                case 0: f.seek(20); f.writeInt(0); break;//node 0 twice
+                case 1: f.seek(36); f.writeInt(readInt(f, 32)); break;//src == dst
+                case 2: f.seek(40); f.writeDouble(-1); break;
+                case 3: f.seek(40); f.writeDouble(Double.NaN); break;
+                case 4: f.seek(40); f.writeDouble(Double.POSITIVE_INFINITY); break;
+                case 5: f.seek(36); f.writeInt(99); break;
+                default://the second edge is the first one again
+                    f.seek(48); f.writeInt(readInt(f, 32)); f.writeInt(readInt(f, 36)); break;
+            }
+            f.close();
+            try {
+                WGraph_IO.load("g.bin");
+                fail("loaded a file with " + messages[k]);
+            }
+            catch (IOException e) {
+                assertTrue(e.getMessage().contains(messages[k]), e.getMessage());
+            }
+        }
+    }
+
+    private static int readInt(RandomAccessFile f, long pos) throws IOException {
+        long back = f.getFilePointer();
+        f.seek(pos);
+        int x = f.readInt();
+        f.seek(back);
+        return x;
+    }
+
+    private static void write(String file, String text) throws IOException {
+        FileWriter w = new FileWriter(file);
+        w.write(text);
+        w.close();
+    }
+}